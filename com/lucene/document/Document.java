@@ -35,8 +35,16 @@ public final class Document {
 
   /** Adds a field to a document.  Several fields may be added with
    * the same name.  In this case, if the fields are indexed, their text is
-   * treated as though appended for the purposes of search. */
+   * treated as though appended for the purposes of search.  A document may
+   * have at most one doc value per field, however, and adding a second
+   * throws an IllegalArgumentException. */
   public final void add(Field field) {
+    if (field.docValuesType() != Field.NO_DOC_VALUES)
+      for (DocumentFieldList list = fieldList; list != null; list = list.next)
+	if (list.field.docValuesType() != Field.NO_DOC_VALUES &&
+	    list.field.name() == field.name())	  // names are interned
+	  throw new IllegalArgumentException("field " + field.name() +
+					     " has more than one doc value");
     fieldList = new DocumentFieldList(field, fieldList);
   }
 
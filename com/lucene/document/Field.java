@@ -24,16 +24,44 @@ import java.io.Reader;
   value.  Values may be free text, provided as a String or as a Reader, or they
   may be atomic keywords, which are not further processed.  Such keywords may
   be used to represent dates, urls, etc.  Fields are optionally stored in the
-  index, so that they may be returned with hits on the document.
+  index, so that they may be returned with hits on the document.  Stored-only
+  fields may also hold binary or numeric values, which are stored without
+  conversion to text.  Doc value fields hold a single value per document
+  which is neither stored nor indexed, but is written column-wise, so that
+  it may be quickly retrieved by document number for sorting or scoring.
   */
 
 public final class Field {
   private String name = "body";
   private String stringValue = null;
   private Reader readerValue = null;
+  private LazyValue lazyValue = null;
+  private byte[] binaryValue = null;
+  private Number numericValue = null;
+  private int precisionStep = NumericField.PRECISION_STEP;
   private boolean isStored = false;
   private boolean isIndexed = true;
   private boolean isTokenized = true;
+  private int docValuesType = NO_DOC_VALUES;
+  private boolean omitNorms = false;
+  private int indexOptions = DOCS_AND_FREQS_AND_POSITIONS;
+
+  /** {@link #docValuesType()} of a field which has no doc value. */
+  public static final int NO_DOC_VALUES = 0;
+  /** {@link #docValuesType()} of a field with a numeric doc value. */
+  public static final int NUMERIC_DOC_VALUES = 1;
+  /** {@link #docValuesType()} of a field with a sorted String doc value. */
+  public static final int SORTED_DOC_VALUES = 2;
+
+  /** {@link #indexOptions()} of a field which indexes, for each term, the
+    documents, frequencies and positions at which the term occurs. */
+  public static final int DOCS_AND_FREQS_AND_POSITIONS = 0;
+  /** {@link #indexOptions()} of a field which indexes, for each term, the
+    documents and frequencies, but not positions. */
+  public static final int DOCS_AND_FREQS = 1;
+  /** {@link #indexOptions()} of a field which indexes, for each term, only
+    the documents in which it occurs. */
+  public static final int DOCS_ONLY = 2;
 
   /** Constructs a String-valued Field that is not tokenized, but is indexed
     and stored.  Useful for non-text fields, e.g. date or url.  */
@@ -67,16 +95,138 @@ public final class Field {
     return new Field(name, value);
   }
 
+  /** Constructs a binary Field that is stored in the index, for return with
+    hits, but is not indexed.  Useful for, e.g., hashes or serialized data. */
+  public static final Field Binary(String name, byte[] value) {
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+    Field field = new Field(name);
+    field.binaryValue = value;
+    return field;
+  }
+
+  /** Constructs an int-valued Field that is stored in the index, for return
+    with hits, but is not indexed.  The value is stored in binary, not as
+    text. */
+  public static final Field UnIndexed(String name, int value) {
+    return UnIndexed(name, Integer.valueOf(value));
+  }
+
+  /** Constructs a long-valued Field that is stored in the index, for return
+    with hits, but is not indexed.  The value is stored in binary, not as
+    text. */
+  public static final Field UnIndexed(String name, long value) {
+    return UnIndexed(name, Long.valueOf(value));
+  }
+
+  /** Constructs a float-valued Field that is stored in the index, for return
+    with hits, but is not indexed.  The value is stored in binary, not as
+    text. */
+  public static final Field UnIndexed(String name, float value) {
+    return UnIndexed(name, Float.valueOf(value));
+  }
+
+  /** Constructs a double-valued Field that is stored in the index, for return
+    with hits, but is not indexed.  The value is stored in binary, not as
+    text. */
+  public static final Field UnIndexed(String name, double value) {
+    return UnIndexed(name, Double.valueOf(value));
+  }
+
+  private static final Field UnIndexed(String name, Number value) {
+    return new Field(name, value, NumericField.PRECISION_STEP, true, false);
+  }
+
+  /** Constructs a numeric doc value Field, which is neither stored nor
+    indexed, but may be retrieved by document number from {@link
+    com.lucene.index.IndexReader#getNumericDocValues(String)}.  Useful for,
+    e.g., sorting or scoring by a price or date.  A document may have at
+    most one value per field. */
+  public static final Field NumericDocValue(String name, long value) {
+    Field field = new Field(name, Long.valueOf(value),
+			    NumericField.PRECISION_STEP, false, false);
+    field.docValuesType = NUMERIC_DOC_VALUES;
+    return field;
+  }
+
+  /** Constructs a String doc value Field, which is neither stored nor
+    indexed, but may be retrieved by document number from {@link
+    com.lucene.index.IndexReader#getSortedDocValues(String)}.  Values are
+    numbered in sorted order, which is useful for sorting or faceting.  A
+    document may have at most one value per field. */
+  public static final Field SortedDocValue(String name, String value) {
+    Field field = new Field(name, value, false, false, false);
+    field.docValuesType = SORTED_DOC_VALUES;
+    return field;
+  }
+
+  /** Constructs an int-valued Field that is indexed, so that it may be
+    searched by range, and is stored.  Norms are omitted.  Useful for, e.g.,
+    prices or counts.
+    @see NumericField */
+  public static final Field Keyword(String name, int value) {
+    return Keyword(name, Integer.valueOf(value));
+  }
+
+  /** Constructs a long-valued Field that is indexed, so that it may be
+    searched by range, and is stored.  Norms are omitted.  Useful for, e.g.,
+    millisecond times.
+    @see NumericField */
+  public static final Field Keyword(String name, long value) {
+    return Keyword(name, Long.valueOf(value));
+  }
+
+  /** Constructs a float-valued Field that is indexed, so that it may be
+    searched by range, and is stored.  Norms are omitted.
+    @see NumericField */
+  public static final Field Keyword(String name, float value) {
+    return Keyword(name, Float.valueOf(value));
+  }
+
+  /** Constructs a double-valued Field that is indexed, so that it may be
+    searched by range, and is stored.  Norms are omitted.
+    @see NumericField */
+  public static final Field Keyword(String name, double value) {
+    return Keyword(name, Double.valueOf(value));
+  }
+
+  private static final Field Keyword(String name, Number value) {
+    Field field =
+      new Field(name, value, NumericField.PRECISION_STEP, true, true);
+    field.setOmitNorms(true);			  // lengths mean nothing here
+    return field;
+  }
+
   /** The name of the field (e.g., "date", "subject", "title", "body", etc.)
     as an interned string. */
   public String name() 		{ return name; }
 
   /** The value of the field as a String, or null.  If null, the Reader value
-    is used.  Exactly one of stringValue() and readerValue() must be set. */
-  public String stringValue()		{ return stringValue; }
+    is used.  Exactly one of stringValue(), readerValue(), binaryValue() and
+    numericValue() must be set. */
+  public String stringValue() {
+    if (lazyValue != null) {			  // decode lazy value
+      stringValue = lazyValue.stringValue();
+      lazyValue = null;
+    }
+    return stringValue;
+  }
   /** The value of the field as a Reader, or null.  If null, the String value
-    is used.  Exactly one of stringValue() and readerValue() must be set. */
+    is used.  Exactly one of stringValue(), readerValue(), binaryValue() and
+    numericValue() must be set. */
   public Reader readerValue()	{ return readerValue; }
+  /** The value of the field as a byte array, or null.  Exactly one of
+    stringValue(), readerValue(), binaryValue() and numericValue() must be
+    set. */
+  public byte[] binaryValue()	{ return binaryValue; }
+  /** The value of the field as an Integer, Long, Float or Double, or null.
+    Exactly one of stringValue(), readerValue(), binaryValue() and
+    numericValue() must be set. */
+  public Number numericValue()	{ return numericValue; }
+
+  /** The precision step with which a numeric value is indexed.
+    @see NumericField */
+  public int precisionStep()	{ return precisionStep; }
 
   public Field(String name, String string,
 	       boolean store, boolean index, boolean token) {
@@ -91,6 +241,52 @@ public final class Field {
     this.isIndexed = index;
     this.isTokenized = token;
   }
+  /** Constructs a String-valued Field whose value is only decoded when it
+    is first accessed.  Used when reading fields from an index.
+    @see FieldSelector#LAZY_LOAD */
+  public Field(String name, LazyValue value,
+	       boolean store, boolean index, boolean token) {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+    if (value == null)
+      throw new IllegalArgumentException("value cannot be null");
+
+    this.name = name.intern();			  // field names are interned
+    this.lazyValue = value;
+    this.isStored = store;
+    this.isIndexed = index;
+    this.isTokenized = token;
+  }
+  /** Constructs a numeric Field.  The value must be an Integer, Long, Float
+    or Double.  If indexed, it is indexed with the given precision step so
+    that it may be searched by range.
+    @see NumericField */
+  public Field(String name, Number value, int precisionStep,
+	       boolean store, boolean index) {
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+    if (!(value instanceof Integer || value instanceof Long ||
+	  value instanceof Float || value instanceof Double))
+      throw new IllegalArgumentException("unsupported number: " + value);
+    if (precisionStep < 1)
+      throw new IllegalArgumentException("precisionStep must be >=1");
+
+    this.name = name.intern();			  // field names are interned
+    this.numericValue = value;
+    this.precisionStep = precisionStep;
+    this.isStored = store;
+    this.isIndexed = index;
+    this.isTokenized = false;
+  }
+  private Field(String name) {			  // stored-only binary value
+    if (name == null)
+      throw new IllegalArgumentException("name cannot be null");
+
+    this.name = name.intern();			  // field names are interned
+    this.isStored = true;
+    this.isIndexed = false;
+    this.isTokenized = false;
+  }
   Field(String name, Reader reader) {
     if (name == null)
       throw new IllegalArgumentException("name cannot be null");
@@ -115,14 +311,62 @@ public final class Field {
     Reader-valued. */
   public final boolean 	isTokenized() 	{ return isTokenized; }
 
+  /** True iff this field's value is lazily loaded and has not yet been
+    accessed. */
+  public final boolean 	isLazy() 	{ return lazyValue != null; }
+
+  /** True iff no norm is kept for this field.  Norms factor the length of a
+    field into scores, and cost a byte per document in memory when the field
+    is searched.  Fields whose length does not matter, e.g. ids or
+    categories, may omit them, and then score as if one term long.  If any
+    document in a segment omits norms for a field then the field's norms are
+    omitted for every document once segments are merged. */
+  public final boolean	omitNorms()	{ return omitNorms; }
+
+  /** Sets whether norms are omitted for this field.
+    @see #omitNorms() */
+  public final void setOmitNorms(boolean omitNorms) {
+    this.omitNorms = omitNorms;
+  }
+
+  /** What is indexed for each term of this field, one of {@link
+    #DOCS_AND_FREQS_AND_POSITIONS}, {@link #DOCS_AND_FREQS} or {@link
+    #DOCS_ONLY}.  Fields which are never searched with phrases need not index
+    positions, and fields whose term frequencies do not matter, e.g. ids or
+    categories, need not index frequencies, which then score as one.  If
+    documents in a segment index a field with different options, the most
+    restrictive wins once segments are merged. */
+  public final int	indexOptions()	{ return indexOptions; }
+
+  /** Sets what is indexed for each term of this field.
+    @see #indexOptions() */
+  public final void setIndexOptions(int indexOptions) {
+    if (indexOptions < DOCS_AND_FREQS_AND_POSITIONS || indexOptions > DOCS_ONLY)
+      throw new IllegalArgumentException("unknown index options: " +
+					 indexOptions);
+    this.indexOptions = indexOptions;
+  }
+
+  /** The kind of doc value held by this field, one of {@link
+    #NO_DOC_VALUES}, {@link #NUMERIC_DOC_VALUES} or {@link
+    #SORTED_DOC_VALUES}. */
+  public final int 	docValuesType()	{ return docValuesType; }
+
   /** Prints a Field for human consumption. */
   public final String toString() {
-    if (isStored && isIndexed && !isTokenized)
-      return "Keyword<" + name + ":" + stringValue + ">";
+    Object value = numericValue != null ? (Object)numericValue : stringValue();
+    if (docValuesType != NO_DOC_VALUES)
+      return "DocValue<" + name + ":" + value + ">";
+    else if (isStored && isIndexed && !isTokenized)
+      return "Keyword<" + name + ":" + value + ">";
+    else if (binaryValue != null)
+      return "Binary<" + name + ":" + binaryValue.length + " bytes>";
     else if (isStored && !isIndexed && !isTokenized)
-      return "Unindexed<" + name + ":" + stringValue + ">";
-    else if (isStored && isIndexed && isTokenized && stringValue!=null)
-      return "Text<" + name + ":" + stringValue + ">";
+      return "Unindexed<" + name + ":" + value + ">";
+    else if (isStored && isIndexed && isTokenized && value!=null)
+      return "Text<" + name + ":" + value + ">";
+    else if (!isStored && isIndexed && numericValue!=null)
+      return "UnStored<" + name + ":" + value + ">";
     else if (!isStored && isIndexed && isTokenized && readerValue!=null)
       return "Text<" + name + ":" + readerValue + ">";
     else
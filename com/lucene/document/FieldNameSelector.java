@@ -0,0 +1,49 @@
+/* FieldNameSelector.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.document;
+
+import java.util.Hashtable;
+
+/** A FieldSelector which loads fields by name.  Named fields are loaded
+  either immediately or lazily, and all others are skipped. */
+public final class FieldNameSelector extends FieldSelector {
+  private static final Integer LOAD_RESULT = Integer.valueOf(LOAD);
+  private static final Integer LAZY_RESULT = Integer.valueOf(LAZY_LOAD);
+
+  private Hashtable results = new Hashtable();
+
+  /** Constructs a selector loading only the named fields. */
+  public FieldNameSelector(String[] load) {
+    this(load, new String[0]);
+  }
+
+  /** Constructs a selector loading the fields named in <code>load</code>,
+    and lazily loading those named in <code>lazy</code>. */
+  public FieldNameSelector(String[] load, String[] lazy) {
+    for (int i = 0; i < lazy.length; i++)
+      results.put(lazy[i], LAZY_RESULT);
+    for (int i = 0; i < load.length; i++)
+      results.put(load[i], LOAD_RESULT);
+  }
+
+  public final int accept(String fieldName) {
+    Integer result = (Integer)results.get(fieldName);
+    return result != null ? result.intValue() : NO_LOAD;
+  }
+}
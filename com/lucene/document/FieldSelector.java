@@ -0,0 +1,42 @@
+/* FieldSelector.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.document;
+
+/** Determines which stored fields of a document are read from an index.
+  Result pages typically display only a few short fields, such as a title and
+  a url, while a document may also store much larger ones.  Skipping those
+  that are not needed saves decoding their text.
+
+  @see com.lucene.index.IndexReader#document(int,FieldSelector)
+  */
+public abstract class FieldSelector {
+  /** The field's value is read with the document. */
+  public static final int LOAD = 0;
+
+  /** The field is added to the document, but its value is only decoded when
+    it is first accessed. */
+  public static final int LAZY_LOAD = 1;
+
+  /** The field is skipped and is not added to the document. */
+  public static final int NO_LOAD = 2;
+
+  /** Returns {@link #LOAD}, {@link #LAZY_LOAD} or {@link #NO_LOAD} for the
+    named field. */
+  public abstract int accept(String fieldName);
+}
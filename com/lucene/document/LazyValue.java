@@ -0,0 +1,29 @@
+/* LazyValue.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.document;
+
+/** The value of a lazily loaded Field.  It is decoded when the field's value
+  is first accessed.
+
+  @see FieldSelector#LAZY_LOAD
+  */
+public abstract class LazyValue {
+  /** Decodes and returns the value. */
+  public abstract String stringValue();
+}
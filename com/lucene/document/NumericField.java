@@ -0,0 +1,212 @@
+/* NumericField.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.document;
+
+import java.util.Vector;
+
+/** Provides support for indexing numbers so that ranges of them may be
+  searched efficiently.  
+
+  <p>Each value is indexed as several terms, one for each multiple of a
+  <i>precision step</i> of its bits, with the low bits of the value shifted
+  off.  The highest precision term holds the complete value, while lower
+  precision terms each stand for a run of adjacent values.  A range of values
+  can then be covered by a few lower precision terms in its middle and higher
+  precision terms only near its ends, so that the number of terms searched
+  grows with the logarithm of the width of the range, rather than with the
+  number of distinct values in it.
+
+  <p>Terms are encoded so that lexicographic order is numeric order.  Ints
+  and floats are indexed with 32 bits, longs and doubles with 64.  A field
+  must always be indexed and searched with the same type and precision step.
+
+  @see Field#Keyword(String,long)
+  @see com.lucene.search.NumericRangeFilter
+  @see com.lucene.search.NumericRangeQuery
+  */
+public class NumericField {
+  private NumericField() {};
+
+  /** The precision step used unless another is specified.  Smaller steps
+    index more terms per value, but search fewer terms per range. */
+  public static final int PRECISION_STEP = 4;
+
+  // the first char of each term encodes the type and the shift
+  private static final char SHIFT_START_LONG = (char)0x20;
+  private static final char SHIFT_START_INT = (char)0x60;
+
+  /** Returns the terms indexed for a number. */
+  public static String[] terms(Number value, int precisionStep) {
+    checkPrecisionStep(precisionStep);
+    if (value instanceof Long || value instanceof Double) {
+      long bits = value instanceof Long
+	? value.longValue() : doubleToSortableLong(value.doubleValue());
+      String[] terms = new String[(63 / precisionStep) + 1];
+      for (int i = 0; i < terms.length; i++)
+	terms[i] = longToPrefixCoded(bits, i * precisionStep);
+      return terms;
+    } else if (value instanceof Integer || value instanceof Float) {
+      int bits = value instanceof Integer
+	? value.intValue() : floatToSortableInt(value.floatValue());
+      String[] terms = new String[(31 / precisionStep) + 1];
+      for (int i = 0; i < terms.length; i++)
+	terms[i] = intToPrefixCoded(bits, i * precisionStep);
+      return terms;
+    } else {
+      throw new IllegalArgumentException("unsupported number: " + value);
+    }
+  }
+
+  /** Encodes a long with its lowest <code>shift</code> bits removed. */
+  public static String longToPrefixCoded(long value, int shift) {
+    if (shift < 0 || shift > 63)
+      throw new IllegalArgumentException("shift out of range: " + shift);
+    char[] chars = new char[((63 - shift) / 7) + 2];
+    chars[0] = (char)(SHIFT_START_LONG + shift);
+    long bits = (value ^ 0x8000000000000000L) >>> shift; // flip sign bit
+    for (int i = chars.length - 1; i > 0; i--) {  // seven bits per char
+      chars[i] = (char)(bits & 0x7F);
+      bits >>>= 7;
+    }
+    return new String(chars);
+  }
+
+  /** Encodes an int with its lowest <code>shift</code> bits removed. */
+  public static String intToPrefixCoded(int value, int shift) {
+    if (shift < 0 || shift > 31)
+      throw new IllegalArgumentException("shift out of range: " + shift);
+    char[] chars = new char[((31 - shift) / 7) + 2];
+    chars[0] = (char)(SHIFT_START_INT + shift);
+    int bits = (value ^ 0x80000000) >>> shift;	  // flip sign bit
+    for (int i = chars.length - 1; i > 0; i--) {  // seven bits per char
+      chars[i] = (char)(bits & 0x7F);
+      bits >>>= 7;
+    }
+    return new String(chars);
+  }
+
+  /** Decodes a long encoded by {@link #longToPrefixCoded}.  The removed low
+    bits are returned as zeros. */
+  public static long prefixCodedToLong(String s) {
+    int shift = s.charAt(0) - SHIFT_START_LONG;
+    if (shift < 0 || shift > 63)
+      throw new NumberFormatException("not a long term: " + s);
+    long bits = 0L;
+    for (int i = 1; i < s.length(); i++)
+      bits = (bits << 7) | s.charAt(i);
+    return (bits << shift) ^ 0x8000000000000000L;
+  }
+
+  /** Decodes an int encoded by {@link #intToPrefixCoded}.  The removed low
+    bits are returned as zeros. */
+  public static int prefixCodedToInt(String s) {
+    int shift = s.charAt(0) - SHIFT_START_INT;
+    if (shift < 0 || shift > 31)
+      throw new NumberFormatException("not an int term: " + s);
+    int bits = 0;
+    for (int i = 1; i < s.length(); i++)
+      bits = (bits << 7) | s.charAt(i);
+    return (bits << shift) ^ 0x80000000;
+  }
+
+  /** Converts a double to a long which sorts in the same order. */
+  public static long doubleToSortableLong(double value) {
+    long bits = Double.doubleToLongBits(value);
+    if (bits < 0)
+      bits ^= 0x7FFFFFFFFFFFFFFFL;		  // reverse order of negatives
+    return bits;
+  }
+
+  /** Converts a float to an int which sorts in the same order. */
+  public static int floatToSortableInt(float value) {
+    int bits = Float.floatToIntBits(value);
+    if (bits < 0)
+      bits ^= 0x7FFFFFFF;			  // reverse order of negatives
+    return bits;
+  }
+
+  /** Splits the range of longs from <code>min</code> to <code>max</code>,
+    inclusive, into ranges of terms.  Returns pairs of lower and upper terms,
+    both inclusive, so that a value is in the range iff one of its terms is
+    in one of the returned term ranges. */
+  public static String[] splitLongRange(long min, long max,
+					int precisionStep) {
+    return splitRange(min, max, 64, precisionStep);
+  }
+
+  /** Splits the range of ints from <code>min</code> to <code>max</code>,
+    inclusive, into ranges of terms.  Returns pairs of lower and upper terms,
+    both inclusive, so that a value is in the range iff one of its terms is
+    in one of the returned term ranges. */
+  public static String[] splitIntRange(int min, int max, int precisionStep) {
+    return splitRange(min, max, 32, precisionStep);
+  }
+
+  private static String[] splitRange(long min, long max, int size,
+				     int precisionStep) {
+    checkPrecisionStep(precisionStep);
+    Vector ranges = new Vector();
+    if (min > max)
+      return new String[0];			  // empty range
+
+    for (int shift = 0; ; shift += precisionStep) {
+      // the bits removed by the next precision step
+      long diff = 1L << (shift + precisionStep);
+      long mask = ((1L << precisionStep) - 1L) << shift;
+      boolean hasLower = (min & mask) != 0L;
+      boolean hasUpper = (max & mask) != mask;
+      long nextMin = (hasLower ? (min + diff) : min) & ~mask;
+      long nextMax = (hasUpper ? (max - diff) : max) & ~mask;
+      boolean lowerWrapped = nextMin < min;
+      boolean upperWrapped = nextMax > max;
+
+      if (shift + precisionStep >= size || nextMin > nextMax
+	  || lowerWrapped || upperWrapped) {
+	addRange(ranges, min, max, shift, size);  // no lower precision left
+	break;
+      }
+      if (hasLower)				  // ends at this precision
+	addRange(ranges, min, min | mask, shift, size);
+      if (hasUpper)
+	addRange(ranges, max & ~mask, max, shift, size);
+      min = nextMin;				  // middle at lower precision
+      max = nextMax;
+    }
+
+    String[] result = new String[ranges.size()];
+    ranges.copyInto(result);
+    return result;
+  }
+
+  private static void addRange(Vector ranges, long min, long max,
+			       int shift, int size) {
+    if (size == 64) {
+      ranges.addElement(longToPrefixCoded(min, shift));
+      ranges.addElement(longToPrefixCoded(max, shift));
+    } else {
+      ranges.addElement(intToPrefixCoded((int)min, shift));
+      ranges.addElement(intToPrefixCoded((int)max, shift));
+    }
+  }
+
+  private static void checkPrecisionStep(int precisionStep) {
+    if (precisionStep < 1)
+      throw new IllegalArgumentException("precisionStep must be >=1");
+  }
+}
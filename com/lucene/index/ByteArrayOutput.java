@@ -0,0 +1,79 @@
+/* ByteArrayOutput.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+
+import com.lucene.store.OutputStream;
+
+/** An OutputStream which accumulates its output in a growable byte array.
+  Used to assemble data in memory before it is compressed or copied into a
+  file. */
+final class ByteArrayOutput extends OutputStream {
+  private byte[] bytes = new byte[BUFFER];
+  private int length = 0;
+  private int pointer = 0;
+
+  private static final int BUFFER = 1024;
+
+  /** output methods: */
+  protected final void flushBuffer(byte[] b, int len) {
+    flushBuffer(b, 0, len);
+  }
+
+  protected final void flushBuffer(byte[] b, int offset, int len) {
+    int end = pointer + len;
+    if (end > bytes.length) {			  // grow array
+      int size = bytes.length * 2;
+      while (size < end)
+	size *= 2;
+      byte[] newBytes = new byte[size];
+      System.arraycopy(bytes, 0, newBytes, 0, length);
+      bytes = newBytes;
+    }
+    System.arraycopy(b, offset, bytes, pointer, len);
+    pointer = end;
+    if (pointer > length)
+      length = pointer;
+  }
+
+  /** Random-access methods */
+  public final void seek(long pos) throws IOException {
+    super.seek(pos);
+    pointer = (int)pos;
+  }
+
+  public final long length() throws IOException {
+    flush();
+    return length;
+  }
+
+  /** Returns the array holding the data written so far.  Only the first
+    {@link #length()} bytes are valid. */
+  final byte[] bytes() throws IOException {
+    flush();
+    return bytes;
+  }
+
+  /** Discards all data written so far, so that the stream may be reused. */
+  final void reset() throws IOException {
+    seek(0);
+    length = 0;
+  }
+}
@@ -0,0 +1,155 @@
+/* CompoundFileReader.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Hashtable;
+import java.util.Enumeration;
+import java.io.IOException;
+
+import com.lucene.store.Directory;
+import com.lucene.store.InputStream;
+import com.lucene.store.OutputStream;
+
+/** A read-only Directory over the files of a compound file, as written by
+  {@link CompoundFileWriter}.  The compound file is opened once, and each
+  file within it is read through a slice of that single stream.
+  @see CompoundFileWriter */
+final class CompoundFileReader extends Directory {
+  private static final class FileEntry {
+    long offset;
+    long length;
+  }
+
+  private Directory directory;
+  private String fileName;
+  private InputStream stream;
+  private Hashtable entries = new Hashtable();	  // maps names to entries
+
+  CompoundFileReader(Directory dir, String name) throws IOException {
+    directory = dir;
+    fileName = name;
+    stream = dir.openFile(name);
+    boolean success = false;
+    try {
+      int count = stream.readVInt();		  // read directory
+      FileEntry entry = null;
+      for (int i = 0; i < count; i++) {
+	long offset = stream.readLong();
+	if (entry != null)
+	  entry.length = offset - entry.offset;	  // ends where next starts
+	entry = new FileEntry();
+	entry.offset = offset;
+	entries.put(stream.readString(), entry);
+      }
+      if (entry != null)
+	entry.length = stream.length() - entry.offset;
+      success = true;
+    } finally {
+      if (!success)
+	stream.close();
+    }
+  }
+
+  /** Returns an array of strings, one for each file in the compound file. */
+  public final String[] list() {
+    String[] result = new String[entries.size()];
+    Enumeration names = entries.keys();
+    for (int i = 0; names.hasMoreElements(); i++)
+      result[i] = (String)names.nextElement();
+    return result;
+  }
+
+  /** Returns true iff the compound file contains the named file. */
+  public final boolean fileExists(String name) {
+    return entries.containsKey(name);
+  }
+
+  /** Returns the time the compound file was last modified. */
+  public final long fileModified(String name) throws IOException {
+    return directory.fileModified(fileName);
+  }
+
+  /** Not implemented: compound files are read-only. */
+  public final void deleteFile(String name) throws IOException {
+    throw new IOException("compound file " + fileName + " is read-only");
+  }
+
+  /** Not implemented: compound files are read-only. */
+  public final void renameFile(String from, String to) throws IOException {
+    throw new IOException("compound file " + fileName + " is read-only");
+  }
+
+  /** Returns the length of a file in the compound file. */
+  public final long fileLength(String name) throws IOException {
+    return entry(name).length;
+  }
+
+  /** Not implemented: compound files are read-only. */
+  public final OutputStream createFile(String name) throws IOException {
+    throw new IOException("compound file " + fileName + " is read-only");
+  }
+
+  /** Returns a stream reading a file in the compound file. */
+  public final InputStream openFile(String name) throws IOException {
+    FileEntry entry = entry(name);
+    return new CSInputStream(stream, entry.offset, entry.length);
+  }
+
+  /** Closes the compound file. */
+  public final void close() throws IOException {
+    stream.close();
+  }
+
+  private final FileEntry entry(String name) throws IOException {
+    FileEntry entry = (FileEntry)entries.get(name);
+    if (entry == null)
+      throw new IOException("no file " + name + " in " + fileName);
+    return entry;
+  }
+}
+
+/** Reads a slice of a compound file.  All slices share the compound file's
+  stream, so reads synchronize on it and seek before reading. */
+final class CSInputStream extends InputStream {
+  private InputStream base;
+  private long fileOffset;
+
+  CSInputStream(InputStream base, long fileOffset, long length) {
+    this.base = base;
+    this.fileOffset = fileOffset;
+    this.length = length;
+  }
+
+  protected final void readInternal(byte[] b, int offset, int len)
+       throws IOException {
+    synchronized (base) {
+      long start = getFilePointer();
+      if (start + len > length)
+	throw new IOException("read past EOF");
+      base.seek(fileOffset + start);
+      base.readBytes(b, offset, len);
+    }
+  }
+
+  protected final void seekInternal(long pos) throws IOException {
+  }
+
+  public final void close() throws IOException {
+  }
+}
@@ -0,0 +1,100 @@
+/* CompoundFileWriter.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Vector;
+import java.io.IOException;
+
+import com.lucene.store.Directory;
+import com.lucene.store.InputStream;
+import com.lucene.store.OutputStream;
+
+/** Combines the files of a segment into a single compound file, so that a
+  reader needs only one file descriptor per segment.  The format is:
+  <pre>
+  VInt fileCount, &lt;long dataOffset, String fileName&gt;<sup>fileCount</sup>,
+  &lt;file data&gt;<sup>fileCount</sup>
+  </pre>
+  @see CompoundFileReader */
+final class CompoundFileWriter {
+  private Directory directory;
+  private String fileName;
+  private Vector files = new Vector();
+
+  CompoundFileWriter(Directory dir, String name) {
+    directory = dir;
+    fileName = name;
+  }
+
+  /** Adds a file of the directory to the compound file. */
+  final void addFile(String file) {
+    if (files.contains(file))
+      throw new IllegalArgumentException("file " + file + " already added");
+    files.addElement(file);
+  }
+
+  /** Returns the names of the files added. */
+  final Vector files() {
+    return files;
+  }
+
+  /** Writes the compound file.  The files added are not deleted. */
+  final void close() throws IOException {
+    OutputStream output = directory.createFile(fileName);
+    try {
+      long[] directoryOffsets = new long[files.size()];
+      output.writeVInt(files.size());		  // write directory
+      for (int i = 0; i < files.size(); i++) {
+	directoryOffsets[i] = output.getFilePointer();
+	output.writeLong(0);			  // placeholder for offset
+	output.writeString((String)files.elementAt(i));
+      }
+
+      long[] dataOffsets = new long[files.size()];
+      byte[] buffer = new byte[OutputStream.MERGE_BUFFER_SIZE];
+      for (int i = 0; i < files.size(); i++) {	  // copy file data
+	dataOffsets[i] = output.getFilePointer();
+	copyFile((String)files.elementAt(i), output, buffer);
+      }
+
+      for (int i = 0; i < files.size(); i++) {	  // fill in offsets
+	output.seek(directoryOffsets[i]);
+	output.writeLong(dataOffsets[i]);
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  private final void copyFile(String file, OutputStream output,
+			      byte[] buffer) throws IOException {
+    InputStream input = directory.openFile(file);
+    try {
+      long remainder = input.length();
+      while (remainder > 0) {
+	int len = (int)Math.min(buffer.length, remainder);
+	input.readBytes(buffer, 0, len);
+	output.writeBytes(buffer, len);
+	remainder -= len;
+      }
+    } finally {
+      input.close();
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/* DocValuesReader.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Hashtable;
+import java.util.Enumeration;
+import java.io.IOException;
+
+import com.lucene.document.Field;
+import com.lucene.store.Directory;
+import com.lucene.store.InputStream;
+import com.lucene.util.PackedInts;
+
+/** Reads the doc values of a segment from its ".dv" file, as written by
+  {@link DocValuesWriter}.  Only the directory of fields is read when the
+  segment is opened.  Each value is read when it is requested, by seeking to
+  it in the file, so that columns need not fit in memory. */
+final class DocValuesReader {
+  private InputStream input;
+  private Hashtable types = new Hashtable();	  // maps names to types
+  private Hashtable pointers = new Hashtable();	  // maps names to pointers
+  private Hashtable cache = new Hashtable();	  // maps names to values
+
+  DocValuesReader(Directory d, String segment) throws IOException {
+    input = d.openFile(segment + ".dv");
+    input.seek(input.length() - 8);
+    input.seek(input.readLong());		  // seek to directory
+    int size = input.readVInt();
+    for (int i = 0; i < size; i++) {
+      String name = input.readString().intern();
+      types.put(name, Integer.valueOf(input.readByte()));
+      pointers.put(name, Long.valueOf(input.readLong()));
+    }
+  }
+
+  /** Returns the names of the fields with doc values. */
+  final Enumeration fields() {
+    return types.keys();
+  }
+
+  /** Returns the type of doc values of <code>field</code>. */
+  final int type(String field) {
+    Integer type = (Integer)types.get(field);
+    return type == null ? Field.NO_DOC_VALUES : type.intValue();
+  }
+
+  final synchronized NumericDocValues numeric(String field)
+       throws IOException {
+    if (type(field) != Field.NUMERIC_DOC_VALUES)
+      return null;
+    NumericDocValues values = (NumericDocValues)cache.get(field);
+    if (values == null) {
+      input.seek(((Long)pointers.get(field)).longValue());
+      long min = input.readLong();
+      values = new DiskNumericDocValues(min, new DiskPackedInts(input));
+      cache.put(field, values);
+    }
+    return values;
+  }
+
+  final synchronized SortedDocValues sorted(String field)
+       throws IOException {
+    if (type(field) != Field.SORTED_DOC_VALUES)
+      return null;
+    SortedDocValues values = (SortedDocValues)cache.get(field);
+    if (values == null) {
+      input.seek(((Long)pointers.get(field)).longValue());
+      DiskPackedInts ords = new DiskPackedInts(input);
+      input.seek(ords.end());
+      DiskPackedInts addresses = new DiskPackedInts(input);
+      values = new DiskSortedDocValues(ords, addresses, addresses.end());
+      cache.put(field, values);
+    }
+    return values;
+  }
+
+  final void close() throws IOException {
+    input.close();
+  }
+}
+
+/** A {@link PackedInts} array which is read from a file as its values are
+  requested.  Each has its own clone of the file's stream. */
+final class DiskPackedInts {
+  InputStream input;
+  private int size;
+  private int bitsPerValue;
+  private long start;				  // pointer to blocks
+
+  /** Reads the array's header from the current position of
+    <code>input</code>. */
+  DiskPackedInts(InputStream input) throws IOException {
+    size = input.readVInt();
+    bitsPerValue = input.readByte();
+    start = input.getFilePointer();
+    this.input = (InputStream)input.clone();
+  }
+
+  final long get(int index) throws IOException {
+    return PackedInts.get(input, start, bitsPerValue, index);
+  }
+
+  final int size() {
+    return size;
+  }
+
+  /** Returns the pointer to the end of the array in the file. */
+  final long end() {
+    return start + PackedInts.blocksLength(size, bitsPerValue);
+  }
+}
+
+final class DiskNumericDocValues extends NumericDocValues {
+  private long min;
+  private DiskPackedInts values;
+
+  DiskNumericDocValues(long min, DiskPackedInts values) {
+    this.min = min;
+    this.values = values;
+  }
+
+  public final synchronized long get(int doc) throws IOException {
+    return min + values.get(doc);
+  }
+}
+
+final class DiskSortedDocValues extends SortedDocValues {
+  private DiskPackedInts ords;			  // ord + 1, zero if no value
+  private DiskPackedInts addresses;		  // ord to value offset
+  private long valuesStart;			  // pointer to values
+
+  DiskSortedDocValues(DiskPackedInts ords, DiskPackedInts addresses,
+		      long valuesStart) {
+    this.ords = ords;
+    this.addresses = addresses;
+    this.valuesStart = valuesStart;
+  }
+
+  public final synchronized int getOrd(int doc) throws IOException {
+    return (int)ords.get(doc) - 1;
+  }
+
+  public final synchronized String lookup(int ord) throws IOException {
+    InputStream input = addresses.input;	  // share one stream
+    input.seek(valuesStart + addresses.get(ord));
+    return input.readString();
+  }
+
+  public final int getValueCount() {
+    return addresses.size();
+  }
+}
@@ -0,0 +1,152 @@
+/* DocValuesWriter.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Vector;
+import java.io.IOException;
+
+import com.lucene.document.Field;
+import com.lucene.store.Directory;
+import com.lucene.store.OutputStream;
+import com.lucene.util.PackedInts;
+
+/** Writes the doc values of a segment to its ".dv" file.  Each field's
+  values are written as a column, followed by a directory of fields:
+  <pre>
+  numeric: long minValue, PackedInts (value - minValue)
+  sorted:  PackedInts (ord + 1), where zero means no value,
+	   PackedInts address, String value<sup>valueCount</sup>
+  directory: VInt fieldCount, &lt;String name, byte type, long pointer&gt;<sup>fieldCount</sup>
+  long directoryPointer
+  </pre>
+  The address of each sorted value is its offset from the first, so that
+  readers may seek to it. */
+final class DocValuesWriter {
+  private OutputStream output;
+  private Vector fields = new Vector();		  // names of fields written
+  private Vector types = new Vector();
+  private Vector pointers = new Vector();
+
+  DocValuesWriter(Directory d, String segment) throws IOException {
+    output = d.createFile(segment + ".dv");
+  }
+
+  /** Writes the numeric values of <code>field</code>, one per document. */
+  final void addNumeric(String field, long[] values) throws IOException {
+    startField(field, Field.NUMERIC_DOC_VALUES);
+    long min = values.length > 0 ? values[0] : 0L;
+    long max = min;
+    for (int i = 1; i < values.length; i++) {
+      if (values[i] < min) min = values[i];
+      if (values[i] > max) max = values[i];
+    }
+    PackedInts packed =
+      new PackedInts(values.length, PackedInts.bitsRequired(max - min));
+    for (int i = 0; i < values.length; i++)
+      packed.set(i, values[i] - min);
+    output.writeLong(min);
+    packed.write(output);
+  }
+
+  /** Writes the sorted values of <code>field</code>, and for each document
+    the ordinal of its value, or -1 if it has none. */
+  final void addSorted(String field, String[] values, int[] ords)
+       throws IOException {
+    startField(field, Field.SORTED_DOC_VALUES);
+    PackedInts packed =
+      new PackedInts(ords.length, PackedInts.bitsRequired(values.length));
+    for (int i = 0; i < ords.length; i++)
+      packed.set(i, ords[i] + 1);
+    packed.write(output);
+
+    ByteArrayOutput text = new ByteArrayOutput();
+    long[] offsets = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      offsets[i] = text.getFilePointer();
+      text.writeString(values[i]);
+    }
+    int length = (int)text.length();
+    PackedInts addresses =
+      new PackedInts(values.length, PackedInts.bitsRequired(length));
+    for (int i = 0; i < values.length; i++)
+      addresses.set(i, offsets[i]);
+    addresses.write(output);
+    output.writeBytes(text.bytes(), length);
+  }
+
+  private final void startField(String field, int type) throws IOException {
+    if (fields.contains(field))
+      throw new IllegalArgumentException("field " + field +
+					 " has more than one doc value");
+    fields.addElement(field);
+    types.addElement(Integer.valueOf(type));
+    pointers.addElement(Long.valueOf(output.getFilePointer()));
+  }
+
+  final void close() throws IOException {
+    try {
+      long directoryPointer = output.getFilePointer();
+      output.writeVInt(fields.size());
+      for (int i = 0; i < fields.size(); i++) {
+	output.writeString((String)fields.elementAt(i));
+	output.writeByte((byte)((Integer)types.elementAt(i)).intValue());
+	output.writeLong(((Long)pointers.elementAt(i)).longValue());
+      }
+      output.writeLong(directoryPointer);
+    } finally {
+      output.close();
+    }
+  }
+
+  /** Merges the sorted values of several readers, some of which may be null.
+    On return <code>ordMaps[i]</code> maps each ordinal of
+    <code>values[i]</code> to its ordinal in the returned values. */
+  static final String[] mergeValues(SortedDocValues[] values,
+				    int[][] ordMaps) throws IOException {
+    int[] upto = new int[values.length];
+    for (int i = 0; i < values.length; i++)
+      if (values[i] != null)
+	ordMaps[i] = new int[values[i].getValueCount()];
+
+    Vector merged = new Vector();
+    while (true) {
+      String min = null;			  // find least next value
+      for (int i = 0; i < values.length; i++) {
+	if (values[i] != null && upto[i] < ordMaps[i].length) {
+	  String value = values[i].lookup(upto[i]);
+	  if (min == null || value.compareTo(min) < 0)
+	    min = value;
+	}
+      }
+      if (min == null)
+	break;					  // all values merged
+
+      int ord = merged.size();
+      merged.addElement(min);
+      for (int i = 0; i < values.length; i++)	  // map equal values
+	if (values[i] != null && upto[i] < ordMaps[i].length &&
+	    values[i].lookup(upto[i]).equals(min))
+	  ordMaps[i][upto[i]++] = ord;
+    }
+
+    String[] result = new String[merged.size()];
+    merged.copyInto(result);
+    return result;
+  }
+}
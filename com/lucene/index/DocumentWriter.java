@@ -26,6 +26,7 @@ import java.util.Enumeration;
 
 import com.lucene.document.Document;
 import com.lucene.document.Field;
+import com.lucene.document.NumericField;
 import com.lucene.analysis.Analyzer;
 import com.lucene.analysis.TokenStream;
 import com.lucene.analysis.Token;
@@ -52,9 +53,9 @@ public final class DocumentWriter {
     fieldInfos.add(doc);
     fieldInfos.write(directory, segment + ".fnm");
 
-    // write field values
+    // write field values, uncompressed since this segment is soon merged
     FieldsWriter fieldsWriter =
-      new FieldsWriter(directory, segment, fieldInfos);
+      new FieldsWriter(directory, segment, fieldInfos, false);
     try {
       fieldsWriter.addDocument(doc);
     } finally {
@@ -87,7 +88,9 @@ public final class DocumentWriter {
 
     // write norms of indexed fields
     writeNorms(doc, segment);
-    
+
+    // write doc values
+    writeDocValues(doc, segment);
   }
 
   // Keys are Terms, values are Postings.
@@ -101,13 +104,20 @@ public final class DocumentWriter {
     Enumeration fields  = doc.fields();
     while (fields.hasMoreElements()) {
       Field field = (Field)fields.nextElement();
+      if (field.docValuesType() != Field.NO_DOC_VALUES)
+	continue;				  // not inverted
       String fieldName = field.name();
       int fieldNumber = fieldInfos.fieldNumber(fieldName);
 
       int position = fieldLengths[fieldNumber];	  // position in field
 
       if (field.isIndexed()) {
-	if (!field.isTokenized()) {		  // un-tokenized field
+	if (field.numericValue() != null) {	  // numeric field
+	  String[] terms = NumericField.terms(field.numericValue(),
+					      field.precisionStep());
+	  for (int i = 0; i < terms.length; i++)
+	    addPosition(fieldName, terms[i], position++);
+	} else if (!field.isTokenized()) {	  // un-tokenized field
 	  addPosition(fieldName, field.stringValue(), position++);
 	} else {
 	  Reader reader;			  // find or make Reader
@@ -244,13 +254,20 @@ public final class DocumentWriter {
 	tis.add(posting.term, ti);
 	
 	// add an entry to the freq file
+	int indexOptions = fieldInfos.fieldInfo(posting.term.field).indexOptions;
 	int f = posting.freq;
+	if (indexOptions == Field.DOCS_ONLY) {
+	  freq.writeVInt(0);			  // the document number only
+	  continue;
+	}
 	if (f == 1)				  // optimize freq=1
 	  freq.writeVInt(1);			  // set low bit of doc num.
 	else {
 	  freq.writeVInt(0);			  // the document number
 	  freq.writeVInt(f);			  // frequency in doc
 	}
+	if (indexOptions == Field.DOCS_AND_FREQS)
+	  continue;				  // no positions
 	
 	int lastPosition = 0;			  // write positions
 	int[] positions = posting.positions;
@@ -270,18 +287,44 @@ public final class DocumentWriter {
 
   private final void writeNorms(Document doc, String segment)
        throws IOException {
-    Enumeration fields  = doc.fields();
-    while (fields.hasMoreElements()) {
-      Field field = (Field)fields.nextElement();
-      if (field.isIndexed()) {
-	int fieldNumber = fieldInfos.fieldNumber(field.name());
-	OutputStream norm = directory.createFile(segment + ".f" + fieldNumber);
-	try {
-	  norm.writeByte(Similarity.norm(fieldLengths[fieldNumber]));
-	} finally {
-	  norm.close();
+    OutputStream norms = directory.createFile(segment + ".nrm");
+    try {
+      norms.writeBytes(SegmentReader.NORMS_HEADER,
+		       SegmentReader.NORMS_HEADER.length);
+      for (int i = 0; i < fieldInfos.size(); i++) {
+	FieldInfo fi = fieldInfos.fieldInfo(i);
+	if (fi.isIndexed && !fi.omitNorms)	  // in field number order
+	  norms.writeByte(Similarity.norm(fieldLengths[i]));
+      }
+    } finally {
+      norms.close();
+    }
+  }
+
+  private final void writeDocValues(Document doc, String segment)
+       throws IOException {
+    DocValuesWriter docValues = null;
+    try {
+      Enumeration fields  = doc.fields();
+      while (fields.hasMoreElements()) {
+	Field field = (Field)fields.nextElement();
+	int type = field.docValuesType();
+	if (type == Field.NO_DOC_VALUES)
+	  continue;
+	if (docValues == null)
+	  docValues = new DocValuesWriter(directory, segment);
+	if (type == Field.NUMERIC_DOC_VALUES) {
+	  long[] values = { field.numericValue().longValue() };
+	  docValues.addNumeric(field.name(), values);
+	} else {
+	  String[] values = { field.stringValue() };
+	  int[] ords = { 0 };
+	  docValues.addSorted(field.name(), values, ords);
 	}
       }
+    } finally {
+      if (docValues != null)
+	docValues.close();
     }
   }
 }
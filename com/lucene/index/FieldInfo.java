@@ -18,10 +18,14 @@
  */
 package com.lucene.index;
 
+import com.lucene.document.Field;
+
 final class FieldInfo {
   String name;
   boolean isIndexed;
   int number;
+  boolean omitNorms = false;			  // see Field.omitNorms()
+  int indexOptions = Field.DOCS_AND_FREQS_AND_POSITIONS;
 
   FieldInfo(String na, boolean tk, int nu) {
     name = na;
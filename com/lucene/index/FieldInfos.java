@@ -31,6 +31,12 @@ import com.lucene.store.OutputStream;
 import com.lucene.store.InputStream;
 
  final public class FieldInfos {
+  // bits of the byte written for each field
+  static final byte IS_INDEXED = 0x1;
+  static final byte OMIT_NORMS = 0x2;
+  static final byte OMIT_POSITIONS = 0x4;
+  static final byte OMIT_FREQS = 0x8;
+
   private Vector byNumber = new Vector();
   private Hashtable byName = new Hashtable();
 
@@ -52,7 +58,9 @@ import com.lucene.store.InputStream;
     Enumeration fields  = doc.fields();
     while (fields.hasMoreElements()) {
       Field field = (Field)fields.nextElement();
-      add(field.name(), field.isIndexed());
+      if (field.docValuesType() == Field.NO_DOC_VALUES) // doc values in ".dv"
+	add(field.name(), field.isIndexed(),
+	    field.omitNorms(), field.indexOptions());
     }
   }
 
@@ -60,24 +68,37 @@ import com.lucene.store.InputStream;
   public final void add(FieldInfos other) {
     for (int i = 0; i < other.size(); i++) {
       FieldInfo fi = other.fieldInfo(i);
-      add(fi.name, fi.isIndexed);
+      add(fi.name, fi.isIndexed, fi.omitNorms, fi.indexOptions);
     }
   }
 
   public final void add(String name, boolean isIndexed) {
+    add(name, isIndexed, false, Field.DOCS_AND_FREQS_AND_POSITIONS);
+  }
+
+  /** Adds a field.  If the field is already present then norms are omitted
+    if either omits them, and the more restrictive index options are kept. */
+  public final void add(String name, boolean isIndexed,
+			boolean omitNorms, int indexOptions) {
     FieldInfo fi = fieldInfo(name);
     if (fi == null)
-      addInternal(name, isIndexed);
+      fi = addInternal(name, isIndexed);
     else if (fi.isIndexed != isIndexed)
       throw new IllegalStateException("field " + name +
 				      (fi.isIndexed ? " must" : " cannot") +
 				      " be an indexed field.");
+    if (isIndexed) {
+      fi.omitNorms |= omitNorms;
+      if (indexOptions > fi.indexOptions)
+	fi.indexOptions = indexOptions;
+    }
   }
 
-  private final void addInternal(String name, boolean isIndexed) {
+  private final FieldInfo addInternal(String name, boolean isIndexed) {
     FieldInfo fi = new FieldInfo(name, isIndexed, byNumber.size());
     byNumber.addElement(fi);
     byName.put(name, fi);
+    return fi;
   }
 
   final int fieldNumber(String fieldName) {
@@ -117,15 +138,31 @@ import com.lucene.store.InputStream;
     output.writeVInt(size());
     for (int i = 0; i < size(); i++) {
       FieldInfo fi = fieldInfo(i);
+      byte bits = 0x0;
+      if (fi.isIndexed)
+	bits |= IS_INDEXED;
+      if (fi.omitNorms)
+	bits |= OMIT_NORMS;
+      if (fi.indexOptions != Field.DOCS_AND_FREQS_AND_POSITIONS)
+	bits |= OMIT_POSITIONS;
+      if (fi.indexOptions == Field.DOCS_ONLY)
+	bits |= OMIT_FREQS;
       output.writeString(fi.name);
-      output.writeByte((byte)(fi.isIndexed ? 1 : 0));
+      output.writeByte(bits);
     }
   }
 
   private final void read(InputStream input) throws IOException {
     int size = input.readVInt();
-    for (int i = 0; i < size; i++)
-      addInternal(input.readString().intern(),
-		  input.readByte() != 0);
+    for (int i = 0; i < size; i++) {
+      String name = input.readString().intern();
+      byte bits = input.readByte();
+      FieldInfo fi = addInternal(name, (bits & IS_INDEXED) != 0);
+      fi.omitNorms = (bits & OMIT_NORMS) != 0;
+      if ((bits & OMIT_FREQS) != 0)
+	fi.indexOptions = Field.DOCS_ONLY;
+      else if ((bits & OMIT_POSITIONS) != 0)
+	fi.indexOptions = Field.DOCS_AND_FREQS;
+    }
   }
 }
@@ -20,18 +20,35 @@ package com.lucene.index;
 
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
 import java.io.IOException;
 
 import com.lucene.store.Directory;
 import com.lucene.store.InputStream;
+import com.lucene.store.OutputStream;
 import com.lucene.document.Document;
 import com.lucene.document.Field;
+import com.lucene.document.FieldSelector;
+import com.lucene.document.LazyValue;
+import com.lucene.document.NumericField;
 
+/** Reads stored fields written by {@link FieldsWriter}.  The most recently
+  used block is kept uncompressed, so that documents which are near one
+  another, e.g., when merging, cost only a single decompression. */
 final class FieldsReader {
   private FieldInfos fieldInfos;
   private InputStream fieldsStream;
   private InputStream indexStream;
   private int size;
+  private boolean blocked;			  // false for older indexes
+
+  private Inflater inflater;
+  private byte[] compressed;
+  private long blockPointer = -1;		  // cache of last block read
+  private byte[] blockBytes;
+  private int blockLength;
+  private boolean blockShared;			  // referenced by lazy fields
 
   FieldsReader(Directory d, String segment, FieldInfos fn)
        throws IOException {
@@ -40,12 +57,20 @@ final class FieldsReader {
     fieldsStream = d.openFile(segment + ".fdt");
     indexStream = d.openFile(segment + ".fdx");
 
-    size = (int)indexStream.length() / 8;
+    long indexLength = indexStream.length();
+    blocked = indexLength >= 4
+      && indexStream.readInt() == FieldsWriter.FORMAT_BLOCKED;
+    if (blocked)
+      size = (int)((indexLength - 4) / FieldsWriter.INDEX_ENTRY_SIZE);
+    else
+      size = (int)indexLength / 8;
   }
 
   final void close() throws IOException {
     fieldsStream.close();
     indexStream.close();
+    if (inflater != null)
+      inflater.end();				  // free native memory
   }
 
   final int size() {
@@ -53,25 +78,236 @@ final class FieldsReader {
   }
 
   final Document doc(int n) throws IOException {
-    indexStream.seek(n * 8L);
-    long position = indexStream.readLong();
-    fieldsStream.seek(position);
-    
+    return doc(n, null);
+  }
+
+  /** True unless this segment was written in the older, unblocked format. */
+  final boolean isBlocked() {
+    return blocked;
+  }
+
+  /** Appends the bytes of document <code>n</code>, without decoding them,
+    to <code>output</code>.  Only for blocked segments. */
+  final void rawDocument(int n, ByteArrayOutput output) throws IOException {
+    indexStream.seek(4 + n * (long)FieldsWriter.INDEX_ENTRY_SIZE);
+    long pointer = indexStream.readLong();
+    int offset = indexStream.readInt();
+    if (pointer != blockPointer)
+      readBlock(pointer);
+
+    int end = blockLength;			  // find start of next doc
+    if (n + 1 < size && indexStream.readLong() == pointer)
+      end = indexStream.readInt();
+    output.writeBytes(blockBytes, offset, end - offset);
+  }
+
+  /** If document <code>n</code> is the first in a full, compressed block,
+    returns the number of documents in the block, otherwise zero.  Partial
+    blocks, e.g. the last of a segment, are not counted, since copying them
+    as is would leave small blocks which compress poorly. */
+  final int blockDocs(int n) throws IOException {
+    if (!blocked)
+      return 0;
+    indexStream.seek(4 + n * (long)FieldsWriter.INDEX_ENTRY_SIZE);
+    long pointer = indexStream.readLong();
+    if (indexStream.readInt() != 0)
+      return 0;					  // not first in block
+
+    fieldsStream.seek(pointer);
+    int header = fieldsStream.readVInt();
+    if ((header & 1) == 0 || (header >>> 1) < FieldsWriter.BLOCK_SIZE)
+      return 0;					  // not compressed, or partial
+
+    int count = 1;
+    while (n + count < size && indexStream.readLong() == pointer) {
+      indexStream.readInt();
+      count++;
+    }
+    return count;
+  }
+
+  /** Returns the offset of document <code>n</code> within its block. */
+  final int blockOffset(int n) throws IOException {
+    indexStream.seek(4 + n * (long)FieldsWriter.INDEX_ENTRY_SIZE + 8);
+    return indexStream.readInt();
+  }
+
+  /** Copies the compressed block holding document <code>n</code>, without
+    uncompressing it, to <code>output</code>. */
+  final void rawBlock(int n, OutputStream output) throws IOException {
+    indexStream.seek(4 + n * (long)FieldsWriter.INDEX_ENTRY_SIZE);
+    fieldsStream.seek(indexStream.readLong());
+    int header = fieldsStream.readVInt();
+    int compressedLength = fieldsStream.readVInt();
+    if (compressed == null || compressed.length < compressedLength)
+      compressed = new byte[compressedLength];
+    fieldsStream.readBytes(compressed, 0, compressedLength);
+    output.writeVInt(header);
+    output.writeVInt(compressedLength);
+    output.writeBytes(compressed, compressedLength);
+  }
+
+  /** Returns the fields of document <code>n</code> accepted by
+    <code>selector</code>, or all of them if it is null. */
+  final Document doc(int n, FieldSelector selector) throws IOException {
+    if (!blocked) {
+      indexStream.seek(n * 8L);
+      long position = indexStream.readLong();
+      fieldsStream.seek(position);
+      return readDocument(fieldsStream, selector);
+    }
+
+    indexStream.seek(4 + n * (long)FieldsWriter.INDEX_ENTRY_SIZE);
+    long pointer = indexStream.readLong();
+    int offset = indexStream.readInt();
+    if (pointer != blockPointer)
+      readBlock(pointer);
+
+    InputStream input = new ByteArrayInput(blockBytes, blockLength);
+    input.seek(offset);
+    return readDocument(input, selector);
+  }
+
+  private final Document readDocument(InputStream input,
+				      FieldSelector selector)
+       throws IOException {
     Document doc = new Document();
-    int numFields = fieldsStream.readVInt();
+    int numFields = input.readVInt();
     for (int i = 0; i < numFields; i++) {
-      int fieldNumber = fieldsStream.readVInt();
+      int fieldNumber = input.readVInt();
       FieldInfo fi = fieldInfos.fieldInfo(fieldNumber);
 
-      byte bits = fieldsStream.readByte();
+      byte bits = input.readByte();
+      boolean tokenized = (bits & FieldsWriter.FIELD_IS_TOKENIZED) != 0;
+
+      int accept = selector == null
+	? FieldSelector.LOAD : selector.accept(fi.name);
 
-      doc.add(new Field(fi.name,		  // name
-			fieldsStream.readString(), // read value
-			true,			  // stored
-			fi.isIndexed,		  // indexed
-			(bits & 1) != 0));	  // tokenized
+      if (!blocked) {				  // no lengths: must decode
+	String value = input.readString();
+	if (accept != FieldSelector.NO_LOAD)
+	  doc.add(new Field(fi.name, value, true, fi.isIndexed, tokenized));
+	continue;
+      }
+
+      int length = input.readVInt();
+      if (accept == FieldSelector.NO_LOAD) {	  // skip value
+	input.seek(input.getFilePointer() + length);
+      } else if ((bits & FieldsWriter.FIELD_IS_BINARY) != 0) {
+	byte[] binary = new byte[length];
+	input.readBytes(binary, 0, length);
+	doc.add(Field.Binary(fi.name, binary));
+      } else if ((bits & FieldsWriter.FIELD_NUMERIC_MASK) != 0) {
+	doc.add(readNumeric(fi, bits, input));
+      } else if (accept == FieldSelector.LAZY_LOAD) {
+	long position = input.getFilePointer();
+	blockShared = true;			  // don't overwrite block
+	doc.add(new Field(fi.name,		  // name
+			  new LazyStringValue(blockBytes, blockLength,
+					      position),
+			  true,			  // stored
+			  fi.isIndexed,		  // indexed
+			  tokenized));		  // tokenized
+	input.seek(position + length);
+      } else {
+	doc.add(new Field(fi.name,		  // name
+			  input.readString(),	  // read value
+			  true,			  // stored
+			  fi.isIndexed,		  // indexed
+			  tokenized));		  // tokenized
+      }
     }
 
     return doc;
   }
+
+  /** Reads a numeric value.  The precision step with which it was indexed
+    is not stored, so the default is assumed. */
+  private static final Field readNumeric(FieldInfo fi, byte bits,
+					 InputStream input)
+       throws IOException {
+    Number value;
+    switch (bits & FieldsWriter.FIELD_NUMERIC_MASK) {
+    case FieldsWriter.FIELD_IS_INT:
+      value = Integer.valueOf(input.readInt());
+      break;
+    case FieldsWriter.FIELD_IS_LONG:
+      value = Long.valueOf(input.readLong());
+      break;
+    case FieldsWriter.FIELD_IS_FLOAT:
+      value = Float.valueOf(Float.intBitsToFloat(input.readInt()));
+      break;
+    case FieldsWriter.FIELD_IS_DOUBLE:
+      value = Double.valueOf(Double.longBitsToDouble(input.readLong()));
+      break;
+    default:
+      throw new IOException("unknown numeric field type: " + bits);
+    }
+    return new Field(fi.name, value, NumericField.PRECISION_STEP,
+		     true, fi.isIndexed);
+  }
+
+  /** Reads and, if needed, uncompresses the block at <code>pointer</code>. */
+  private final void readBlock(long pointer) throws IOException {
+    fieldsStream.seek(pointer);
+    int header = fieldsStream.readVInt();
+    int length = header >>> 1;
+    if (blockBytes == null || blockBytes.length < length || blockShared)
+      blockBytes = new byte[length];
+    blockShared = false;
+
+    blockPointer = -1;				  // invalid until complete
+    if ((header & 1) == 0) {			  // stored as is
+      fieldsStream.readBytes(blockBytes, 0, length);
+    } else {
+      int compressedLength = fieldsStream.readVInt();
+      if (compressed == null || compressed.length < compressedLength)
+	compressed = new byte[compressedLength];
+      fieldsStream.readBytes(compressed, 0, compressedLength);
+
+      if (inflater == null)
+	inflater = new Inflater();
+      inflater.reset();
+      inflater.setInput(compressed, 0, compressedLength);
+      try {
+	int count = 0;
+	while (count < length && !inflater.finished()) {
+	  int n = inflater.inflate(blockBytes, count, length - count);
+	  if (n == 0 && inflater.needsInput())
+	    break;				  // out of data
+	  count += n;
+	}
+	if (count != length)
+	  throw new IOException("stored fields block is truncated");
+      } catch (DataFormatException e) {
+	throw new IOException("stored fields block is corrupt: " +
+			      e.getMessage());
+      }
+    }
+    blockLength = length;
+    blockPointer = pointer;
+  }
+}
+
+/** The value of a lazily loaded field, decoded from the block holding it. */
+final class LazyStringValue extends LazyValue {
+  private byte[] block;
+  private int length;
+  private long position;
+
+  LazyStringValue(byte[] b, int l, long p) {
+    block = b;
+    length = l;
+    position = p;
+  }
+
+  public final String stringValue() {
+    InputStream input = new ByteArrayInput(block, length);
+    try {
+      input.seek(position);
+      return input.readString();
+    } catch (IOException e) {			  // only if block is corrupt
+      throw new RuntimeException(e.toString());
+    }
+  }
 }
@@ -20,32 +20,93 @@ package com.lucene.index;
 
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.zip.Deflater;
 import java.io.IOException;
 
 import com.lucene.store.Directory;
 import com.lucene.store.OutputStream;
 import com.lucene.document.Document;
 import com.lucene.document.Field;
+import com.lucene.util.BitVector;
 
+/** Writes stored fields.  Documents are buffered into blocks of about {@link
+  #BLOCK_SIZE} bytes, each of which is compressed as a unit and appended to
+  the .fdt file.  For each document the .fdx file records the position of its
+  block and its offset within the uncompressed block.  Each field value is
+  preceded by its length in bytes, so that readers may skip it.  Binary and
+  numeric values are written as is, rather than as text. */
 final class FieldsWriter {
+  /** Uncompressed size at which a block of documents is written. */
+  static final int BLOCK_SIZE = 16 * 1024;
+
+  /** Written at the start of the .fdx file of blocked stored fields.  Older
+    .fdx files start with the pointer to the first document, zero, and so may
+    be distinguished from this. */
+  static final int FORMAT_BLOCKED = -1;
+
+  /** Size of each .fdx entry: the block pointer and the offset in block. */
+  static final int INDEX_ENTRY_SIZE = 12;
+
+  /** Bits of the byte written before each field value. */
+  static final byte FIELD_IS_TOKENIZED = 0x1;
+  static final byte FIELD_IS_BINARY = 0x2;
+  static final byte FIELD_NUMERIC_MASK = 0x1C;
+  static final byte FIELD_IS_INT = 0x04;
+  static final byte FIELD_IS_LONG = 0x08;
+  static final byte FIELD_IS_FLOAT = 0x0C;
+  static final byte FIELD_IS_DOUBLE = 0x10;
+
   private FieldInfos fieldInfos;
   private OutputStream fieldsStream;
   private OutputStream indexStream;
+
+  private boolean compress;
+  private Deflater deflater;
+  private byte[] compressed;
+  private ByteArrayOutput block = new ByteArrayOutput();
+  private ByteArrayOutput text = new ByteArrayOutput(); // a string value
   
+  /** Used when merging.  Blocks are compressed, and the files are created
+    with {@link Directory#createMergeFile(String)}. */
   FieldsWriter(Directory d, String segment, FieldInfos fn)
        throws IOException {
+    this(fn, true, d.createMergeFile(segment + ".fdt"),
+	 d.createMergeFile(segment + ".fdx"));
+  }
+
+  /** If <code>compress</code> is false then blocks are written as is.  This is
+    used for the single-document segments buffered while indexing, which are
+    rewritten by the next merge anyway. */
+  FieldsWriter(Directory d, String segment, FieldInfos fn, boolean compress)
+       throws IOException {
+    this(fn, compress, d.createFile(segment + ".fdt"),
+	 d.createFile(segment + ".fdx"));
+  }
+
+  private FieldsWriter(FieldInfos fn, boolean compress,
+		       OutputStream fieldsStream, OutputStream indexStream)
+       throws IOException {
     fieldInfos = fn;
-    fieldsStream = d.createFile(segment + ".fdt");
-    indexStream = d.createFile(segment + ".fdx");
+    this.compress = compress;
+    this.fieldsStream = fieldsStream;
+    this.indexStream = indexStream;
+    indexStream.writeInt(FORMAT_BLOCKED);
   }
 
   final void close() throws IOException {
-    fieldsStream.close();
-    indexStream.close();
+    try {
+      flushBlock();
+    } finally {
+      fieldsStream.close();
+      indexStream.close();
+      if (deflater != null)
+	deflater.end();				  // free native memory
+    }
   }
 
   final void addDocument(Document doc) throws IOException {
-    indexStream.writeLong(fieldsStream.getFilePointer());
+    indexStream.writeLong(fieldsStream.getFilePointer()); // pointer to block
+    indexStream.writeInt((int)block.getFilePointer()); // offset in block
     
     int storedCount = 0;
     Enumeration fields  = doc.fields();
@@ -54,21 +115,136 @@ final class FieldsWriter {
       if (field.isStored())
 	storedCount++;
     }
-    fieldsStream.writeVInt(storedCount);
+    block.writeVInt(storedCount);
     
     fields  = doc.fields();
     while (fields.hasMoreElements()) {
       Field field = (Field)fields.nextElement();
       if (field.isStored()) {
-	fieldsStream.writeVInt(fieldInfos.fieldNumber(field.name()));
+	block.writeVInt(fieldInfos.fieldNumber(field.name()));
 
 	byte bits = 0;
 	if (field.isTokenized())
-	  bits |= 1;
-	fieldsStream.writeByte(bits);
+	  bits |= FIELD_IS_TOKENIZED;
 
-	fieldsStream.writeString(field.stringValue());
+	byte[] binary = field.binaryValue();
+	Number number = field.numericValue();
+	if (binary != null) {
+	  block.writeByte((byte)(bits | FIELD_IS_BINARY));
+	  block.writeVInt(binary.length);
+	  block.writeBytes(binary, binary.length);
+	} else if (number instanceof Integer) {
+	  block.writeByte((byte)(bits | FIELD_IS_INT));
+	  block.writeVInt(4);
+	  block.writeInt(number.intValue());
+	} else if (number instanceof Long) {
+	  block.writeByte((byte)(bits | FIELD_IS_LONG));
+	  block.writeVInt(8);
+	  block.writeLong(number.longValue());
+	} else if (number instanceof Float) {
+	  block.writeByte((byte)(bits | FIELD_IS_FLOAT));
+	  block.writeVInt(4);
+	  block.writeInt(Float.floatToIntBits(number.floatValue()));
+	} else if (number instanceof Double) {
+	  block.writeByte((byte)(bits | FIELD_IS_DOUBLE));
+	  block.writeVInt(8);
+	  block.writeLong(Double.doubleToLongBits(number.doubleValue()));
+	} else {
+	  text.reset();
+	  text.writeString(field.stringValue());
+	  int length = (int)text.length();
+	  block.writeByte(bits);
+	  block.writeVInt(length);		  // so readers may skip it
+	  block.writeBytes(text.bytes(), length);
+	}
       }
     }
+
+    if (block.getFilePointer() >= BLOCK_SIZE)
+      flushBlock();
+  }
+
+  /** Appends the stored fields of the live documents of
+    <code>reader</code>, whose field numbers must be the same as this
+    writer's.  Documents are copied as bytes, without being decoded.  Whole
+    compressed blocks without deletions are copied without being
+    uncompressed, whenever a block of this writer has just been flushed. */
+  final void addDocuments(FieldsReader reader, BitVector deletedDocs)
+       throws IOException {
+    int size = reader.size();
+    int n = 0;
+    while (n < size) {
+      int count = block.length() == 0 ? reader.blockDocs(n) : 0;
+      if (count > 0 && !hasDeletions(deletedDocs, n, n + count)) {
+	long pointer = fieldsStream.getFilePointer();
+	for (int i = n; i < n + count; i++) {	  // rewrite index entries
+	  indexStream.writeLong(pointer);
+	  indexStream.writeInt(reader.blockOffset(i));
+	}
+	reader.rawBlock(n, fieldsStream);	  // copy block as is
+	n += count;
+      } else {
+	if (deletedDocs == null || !deletedDocs.get(n)) {
+	  indexStream.writeLong(fieldsStream.getFilePointer());
+	  indexStream.writeInt((int)block.getFilePointer());
+	  reader.rawDocument(n, block);		  // copy doc into block
+	  if (block.getFilePointer() >= BLOCK_SIZE)
+	    flushBlock();
+	}
+	n++;
+      }
+    }
+  }
+
+  private static final boolean hasDeletions(BitVector deletedDocs,
+					    int start, int end) {
+    if (deletedDocs != null)
+      for (int i = start; i < end; i++)
+	if (deletedDocs.get(i))
+	  return true;
+    return false;
+  }
+
+  /** Writes the buffered documents to the .fdt file as a single block.  A
+    block is written as a VInt holding its uncompressed length shifted left by
+    one, whose low bit is set when the block is compressed.  Compressed blocks
+    then have a VInt for their compressed length.  Finally come the block's
+    bytes. */
+  private final void flushBlock() throws IOException {
+    int length = (int)block.length();
+    if (length == 0)
+      return;
+    byte[] bytes = block.bytes();
+
+    int compressedLength = compress ? deflate(bytes, length) : length;
+    if (compressedLength < length) {
+      fieldsStream.writeVInt((length << 1) | 1);
+      fieldsStream.writeVInt(compressedLength);
+      fieldsStream.writeBytes(compressed, compressedLength);
+    } else {					  // didn't help: store as is
+      fieldsStream.writeVInt(length << 1);
+      fieldsStream.writeBytes(bytes, length);
+    }
+
+    block.reset();
+  }
+
+  /** Compresses <code>bytes</code> into <code>compressed</code> and returns
+    the compressed length, giving up once that reaches <code>length</code>. */
+  private final int deflate(byte[] bytes, int length) {
+    if (deflater == null) {
+      deflater = new Deflater(Deflater.BEST_SPEED);
+      compressed = new byte[BLOCK_SIZE];
+    }
+    if (compressed.length < length)
+      compressed = new byte[length];
+
+    deflater.reset();
+    deflater.setInput(bytes, 0, length);
+    deflater.finish();
+    int count = 0;
+    while (!deflater.finished() && count < length)
+      count += deflater.deflate(compressed, count, length - count);
+    return deflater.finished() ? count : length;
   }
 }
@@ -0,0 +1,54 @@
+/* IndexCommit.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Vector;
+import com.lucene.store.Directory;
+
+/** A commit of an index, made by an {@link IndexWriter} when it commits or
+  merges.  A commit is named by its segments file.  It remains readable,
+  together with every file it uses, until an {@link IndexDeletionPolicy}
+  deletes it.
+
+  <p>Index files are never changed once written, so a backup of a commit
+  need only copy those of its files which it has not already copied.
+  @see SnapshotDeletionPolicy */
+public abstract class IndexCommit {
+  /** Returns the name of this commit's segments file. */
+  public abstract String getSegmentsFileName();
+
+  /** Returns the names of the files this commit uses, including its segments
+    file. */
+  public abstract Vector getFileNames();
+
+  /** Returns the directory containing this commit. */
+  public abstract Directory getDirectory();
+
+  /** Returns the generation of this commit.  Later commits have greater
+    generations. */
+  public abstract long getGeneration();
+
+  /** Deletes this commit.  Its files are deleted once no remaining commit
+    uses them.  This should only be called by an {@link
+    IndexDeletionPolicy}. */
+  public abstract void delete();
+
+  /** Returns true if {@link #delete()} has been called. */
+  public abstract boolean isDeleted();
+}
@@ -0,0 +1,41 @@
+/* IndexDeletionPolicy.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/** Decides which commits of an index are kept.  Files used by a commit which
+  is kept are not deleted, so that, e.g., a reader may keep searching an
+  older commit, or a backup may copy one while the index changes.
+
+  <p>The latest commit should never be deleted.
+  @see KeepOnlyLastCommitDeletionPolicy
+  @see SnapshotDeletionPolicy */
+public abstract class IndexDeletionPolicy {
+  /** Called when an {@link IndexWriter} is opened, or before an {@link
+    IndexReader} commits its deletions, with each {@link IndexCommit} of the
+    index, oldest first. */
+  public abstract void onInit(Vector commits) throws IOException;
+
+  /** Called each time an {@link IndexWriter} or {@link IndexReader}
+    commits, with each {@link IndexCommit} not yet deleted, oldest first.
+    The last is the new commit. */
+  public abstract void onCommit(Vector commits) throws IOException;
+}
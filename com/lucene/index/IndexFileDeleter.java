@@ -0,0 +1,195 @@
+/* IndexFileDeleter.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Vector;
+import java.util.Hashtable;
+
+import com.lucene.store.Directory;
+
+/** Deletes the files of an index which are no longer used.  It keeps those
+  commits which its {@link IndexDeletionPolicy} has not deleted, and deletes
+  every index file which is used neither by one of them nor by the writer's
+  current segments.
+
+  <p>A file which is still used by a reader in this process is deleted when
+  the reader is closed, as counted by {@link IndexFileRefs}.  A file which
+  cannot otherwise be deleted, e.g., because another process has it open, is
+  tried again after the next commit. */
+final class IndexFileDeleter {
+  private Directory directory;
+  private IndexDeletionPolicy policy;
+  private Vector commits = new Vector();	  // not deleted, oldest first
+  PrintStream infoStream = null;
+
+  /** Finds the commits in <code>directory</code> and passes them to the
+    policy's {@link IndexDeletionPolicy#onInit(Vector)}. */
+  IndexFileDeleter(Directory directory, IndexDeletionPolicy policy)
+       throws IOException {
+    this.directory = directory;
+    this.policy = policy;
+
+    String[] files = directory.list();
+    for (int i = 0; i < files.length; i++) {
+      if (SegmentInfos.generation(files[i]) < 0)
+	continue;
+      SegmentInfos infos = new SegmentInfos();
+      infos.read(directory, files[i]);
+      CommitPoint commit = new CommitPoint(directory, infos, files);
+      int j = commits.size();			  // insert in generation order
+      while (j > 0 && ((CommitPoint)commits.elementAt(j-1)).generation
+	     > commit.generation)
+	j--;
+      commits.insertElementAt(commit, j);
+    }
+    if (commits.size() > 0) {
+      policy.onInit((Vector)commits.clone());
+      removeDeleted();
+    }
+  }
+
+  /** Records the commit just written of <code>infos</code>, passes all
+    commits to the policy's {@link IndexDeletionPolicy#onCommit(Vector)}, and
+    deletes the files no longer used. */
+  final void onCommit(SegmentInfos infos) throws IOException {
+    commits.addElement(new CommitPoint(directory, infos, directory.list()));
+    policy.onCommit((Vector)commits.clone());
+    removeDeleted();
+    deleteUnused(infos);
+  }
+
+  private final void removeDeleted() {
+    for (int i = commits.size() - 1; i >= 0; i--)
+      if (((CommitPoint)commits.elementAt(i)).deleted)
+	commits.removeElementAt(i);
+  }
+
+  /** Deletes every index file used neither by a remaining commit nor by
+    <code>infos</code>. */
+  final void deleteUnused(SegmentInfos infos) throws IOException {
+    Hashtable used = new Hashtable();
+    for (int i = 0; i < commits.size(); i++) {
+      Vector files = ((CommitPoint)commits.elementAt(i)).files;
+      for (int j = 0; j < files.size(); j++)
+	used.put(files.elementAt(j), files.elementAt(j));
+    }
+    Vector files = infos.files(directory);
+    for (int i = 0; i < files.size(); i++)
+      used.put(files.elementAt(i), files.elementAt(i));
+
+    String[] names = directory.list();
+    for (int i = 0; i < names.length; i++) {
+      if (!isIndexFile(names[i]) || used.containsKey(names[i]))
+	continue;
+      try {
+	IndexFileRefs.delete(directory, names[i]);
+      } catch (IOException e) {			  // e.g., open elsewhere
+	if (infoStream != null)
+	  infoStream.println(e.getMessage() + "; Will re-try later.");
+      }
+    }
+  }
+
+  /** Extensions of the files written for a segment, besides its norms files
+    of older formats, whose extensions are "f" and a field number. */
+  private static final String[] EXTENSIONS = {
+    "fnm", "fdt", "fdx", "tis", "tii", "frq", "prx", "nrm", "dv", "cfs", "del"
+  };
+
+  /** Returns true if the named file is written by IndexWriter. */
+  static final boolean isIndexFile(String name) {
+    if (SegmentInfos.generation(name) >= 0
+	|| name.equals("segments.new")
+	|| name.equals("deletable") || name.equals("deleteable.new"))
+      return true;
+
+    int dot = name.indexOf('.');
+    if (!name.startsWith("_") || dot < 0)
+      return false;
+    String segment = name.substring(1, dot);
+    String extension = name.substring(dot + 1);
+    if (extension.equals("del")) {		  // may have a generation
+      int gen = segment.indexOf('_');
+      return gen < 0 ? isNumber(segment, Character.MAX_RADIX)
+	: isNumber(segment.substring(0, gen), Character.MAX_RADIX)
+	&& isNumber(segment.substring(gen + 1), Character.MAX_RADIX);
+    }
+    if (!isNumber(segment, Character.MAX_RADIX))
+      return false;
+    for (int i = 0; i < EXTENSIONS.length; i++)
+      if (extension.equals(EXTENSIONS[i]))
+	return true;
+    return extension.startsWith("f")		  // separate norms files
+      && isNumber(extension.substring(1), 10);
+  }
+
+  /** Returns true if <code>s</code> is a non-empty string of digits in
+    <code>radix</code>. */
+  private static final boolean isNumber(String s, int radix) {
+    if (s.length() == 0)
+      return false;
+    for (int i = 0; i < s.length(); i++)
+      if (Character.digit(s.charAt(i), radix) < 0)
+	return false;
+    return true;
+  }
+}
+
+/** A commit found in, or written to, a directory. */
+final class CommitPoint extends IndexCommit {
+  private Directory directory;
+  private String segmentsFileName;
+  long generation;
+  Vector files;
+  boolean deleted = false;
+
+  CommitPoint(Directory directory, SegmentInfos infos, String[] names) {
+    this.directory = directory;
+    generation = infos.generation;
+    segmentsFileName = SegmentInfos.fileName(generation);
+    files = infos.files(directory, names);
+    files.insertElementAt(segmentsFileName, 0);
+  }
+
+  public final String getSegmentsFileName() {
+    return segmentsFileName;
+  }
+
+  public final Vector getFileNames() {
+    return (Vector)files.clone();
+  }
+
+  public final Directory getDirectory() {
+    return directory;
+  }
+
+  public final long getGeneration() {
+    return generation;
+  }
+
+  public final void delete() {
+    deleted = true;
+  }
+
+  public final boolean isDeleted() {
+    return deleted;
+  }
+}
@@ -0,0 +1,105 @@
+/* IndexFileRefs.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+import java.util.Vector;
+import java.util.Hashtable;
+
+import com.lucene.store.Directory;
+
+/** Counts, for each directory, the readers in this process which use each
+  index file.  A file which is deleted while it is used is only deleted when
+  the last reader using it is closed, rather than by repeatedly trying and
+  failing to delete it, as on platforms (e.g. Windows) which do not permit
+  an open file to be deleted. */
+final class IndexFileRefs {
+  private IndexFileRefs() {}
+
+  // maps each Directory to a Hashtable from file name to int[] count
+  private static final Hashtable COUNTS = new Hashtable();
+  // maps each Directory to a Hashtable of the names to delete when released
+  private static final Hashtable PENDING = new Hashtable();
+
+  /** Notes that <code>files</code> are used by another reader. */
+  static synchronized void incRef(Directory directory, Vector files) {
+    Hashtable counts = (Hashtable)COUNTS.get(directory);
+    if (counts == null) {
+      counts = new Hashtable();
+      COUNTS.put(directory, counts);
+    }
+    for (int i = 0; i < files.size(); i++) {
+      int[] count = (int[])counts.get(files.elementAt(i));
+      if (count == null) {
+	count = new int[1];
+	counts.put(files.elementAt(i), count);
+      }
+      count[0]++;
+    }
+  }
+
+  /** Notes that a reader no longer uses <code>files</code>, deleting those
+    which are no longer used by any reader and whose deletion was
+    requested. */
+  static void decRef(Directory directory, Vector files) {
+    Vector released = new Vector();
+    synchronized (IndexFileRefs.class) {
+      Hashtable counts = (Hashtable)COUNTS.get(directory);
+      Hashtable pending = (Hashtable)PENDING.get(directory);
+      if (counts == null)
+	return;					  // already released
+      for (int i = 0; i < files.size(); i++) {
+	Object name = files.elementAt(i);
+	int[] count = (int[])counts.get(name);
+	if (count == null || --count[0] > 0)
+	  continue;
+	counts.remove(name);
+	if (pending != null && pending.remove(name) != null)
+	  released.addElement(name);
+      }
+      if (counts.size() == 0)
+	COUNTS.remove(directory);
+      if (pending != null && pending.size() == 0)
+	PENDING.remove(directory);
+    }
+    for (int i = 0; i < released.size(); i++) {
+      try {
+	directory.deleteFile((String)released.elementAt(i));
+      } catch (IOException e) {}		  // an IndexWriter retries
+    }
+  }
+
+  /** Deletes the named file now if no reader uses it, and otherwise when
+    the last reader using it is closed. */
+  static void delete(Directory directory, String name) throws IOException {
+    synchronized (IndexFileRefs.class) {
+      Hashtable counts = (Hashtable)COUNTS.get(directory);
+      if (counts != null && counts.containsKey(name)) {
+	Hashtable pending = (Hashtable)PENDING.get(directory);
+	if (pending == null) {
+	  pending = new Hashtable();
+	  PENDING.put(directory, pending);
+	}
+	pending.put(name, name);
+	return;					  // deleted when released
+      }
+    }
+    directory.deleteFile(name);
+  }
+}
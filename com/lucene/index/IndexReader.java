@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.File;
 import com.lucene.store.Directory;
 import com.lucene.store.FSDirectory;
+import com.lucene.store.Lock;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 
 /** IndexReader is an abstract class, providing an interface for accessing an
   index.  Search of an index is done entirely through this abstract interface,
@@ -40,6 +42,9 @@ import com.lucene.document.Document;
 abstract public class IndexReader {
   protected IndexReader() {};
 
+  SegmentInfos segmentInfos = null;		  // the commit opened, if any
+  IndexDeletionPolicy deletionPolicy = null;	  // used to commit deletions
+
   /** Returns an IndexReader reading the index in an FSDirectory in the named
   path. */
   public static IndexReader open(String path) throws IOException {
@@ -52,19 +57,243 @@ abstract public class IndexReader {
     return open(FSDirectory.getDirectory(path, false));
   }
 
-  /** Returns an IndexReader reading the index in the given Directory. */
+  /** Returns an IndexReader reading the latest commit of the index in the
+    given Directory.
+
+    <p>No lock is needed: a commit's files are never changed once written.
+    If the commit is deleted by a writer while it is being opened, then the
+    commit which replaced it is opened instead. */
   public static IndexReader open(Directory directory) throws IOException {
-    synchronized (directory) {
+    return open(directory, new KeepOnlyLastCommitDeletionPolicy());
+  }
+
+  /** Returns an IndexReader reading the latest commit of the index in the
+    given Directory, like {@link #open(Directory)}.  When deletions made
+    through it are committed, older commits are kept until
+    <code>policy</code> deletes them, as for an {@link IndexWriter}.  Readers
+    returned by {@link #reopen()} use the same policy. */
+  public static IndexReader open(Directory directory,
+				 IndexDeletionPolicy policy)
+       throws IOException {
+    IndexReader reader = openLatest(directory);
+    reader.deletionPolicy = policy;
+    return reader;
+  }
+
+  private static IndexReader openLatest(Directory directory)
+       throws IOException {
+    while (true) {
+      SegmentInfos infos = new SegmentInfos();
+      try {
+	infos.read(directory);
+	return open(directory, infos, new SegmentReader[0], true);
+      } catch (IOException e) {
+	checkRetry(directory, infos, e);	  // commit deleted meanwhile?
+      }
+    }
+  }
+
+  /** Returns an IndexReader reading the given commit, e.g., one kept by a
+    {@link SnapshotDeletionPolicy}, rather than the latest.  Its {@link
+    #reopen()} method returns a reader of the latest commit. */
+  public static IndexReader open(IndexCommit commit) throws IOException {
+    SegmentInfos infos = new SegmentInfos();
+    infos.read(commit.getDirectory(), commit.getSegmentsFileName());
+    IndexReader reader =
+      open(commit.getDirectory(), infos, new SegmentReader[0], false);
+    reader.deletionPolicy = new KeepOnlyLastCommitDeletionPolicy();
+    return reader;
+  }
+
+  /** Returns a reader of the segments in <code>infos</code>, sharing those
+    of <code>oldReaders</code> which are unchanged. */
+  private static IndexReader open(Directory directory, SegmentInfos infos,
+				  SegmentReader[] oldReaders, boolean closeDir)
+       throws IOException {
+    SegmentReader[] readers = openSegments(infos, oldReaders, closeDir);
+    IndexReader reader;
+    if (readers.length == 1)			  // index is optimized
+      reader = readers[0];
+    else
+      reader = new SegmentsReader(directory, readers);
+    reader.segmentInfos = infos;
+    return reader;
+  }
+
+  /** Rethrows <code>e</code>, which was thrown while opening the commit
+    read into <code>infos</code>, unless a later commit has since been made,
+    which may then be opened instead. */
+  private static void checkRetry(Directory directory, SegmentInfos infos,
+				 IOException e) throws IOException {
+    if (SegmentInfos.latestGeneration(directory.list()) <= infos.generation)
+      throw e;
+  }
+
+  /** Returns a reader of the current state of this reader's index.  If the
+    index has not changed since this reader was opened then this reader is
+    returned.  Otherwise a new reader is returned.  It shares with this reader
+    every segment which is unchanged, so that the term indexes, norms and
+    deletions of those segments are not read again.  This makes frequent
+    refreshes cheap when only a few segments have changed.
+
+    <p>When a new reader is returned, this reader remains open, and both must
+    eventually be closed.  Each has its own deletions: documents deleted
+    through one, and not yet committed, are not deleted in the other.
+
+    <p>Readers returned by {@link IndexWriter#getReader()} are refreshed from
+    their writer, including the documents it has buffered. */
+  public IndexReader reopen() throws IOException {
+    throw new UnsupportedOperationException("reopen");
+  }
+
+  /** Implements {@link #reopen()} for a reader of <code>directory</code>
+    whose segments are read by <code>oldReaders</code>. */
+  static IndexReader reopen(IndexReader reader, Directory directory,
+			    SegmentReader[] oldReaders) throws IOException {
+    while (true) {
       SegmentInfos infos = new SegmentInfos();
-      infos.read(directory);
-      if (infos.size() == 1)			  // index is optimized
-	return new SegmentReader(infos.info(0), true);
-      
-      SegmentReader[] readers = new SegmentReader[infos.size()];
-      for (int i = 0; i < infos.size(); i++)
-	readers[i] = new SegmentReader(infos.info(i), i == infos.size() - 1);
-      return new SegmentsReader(readers);
+      try {
+	infos.read(directory);
+	return reopen(reader, directory, oldReaders, infos);
+      } catch (IOException e) {
+	checkRetry(directory, infos, e);	  // commit deleted meanwhile?
+      }
+    }
+  }
+
+  private static IndexReader reopen(IndexReader reader, Directory directory,
+				    SegmentReader[] oldReaders,
+				    SegmentInfos infos) throws IOException {
+    if (isCurrent(infos, oldReaders))
+      return reader;				  // nothing has changed
+
+    // if the old reader closes the directory, so must the new reader,
+    // which thus needs its own reference to it
+    boolean closeDir = false;
+    for (int i = 0; i < infos.size(); i++)
+      if (find(oldReaders, infos.info(i)) == null)
+	closeDir = true;			  // will open a new segment
+    if (closeDir) {
+      closeDir = false;
+      for (int i = 0; i < oldReaders.length; i++)
+	if (oldReaders[i].closeDirectory)
+	  closeDir = true;
+    }
+    if (closeDir) {
+      if (directory instanceof FSDirectory) {
+	FSDirectory dir = FSDirectory.getDirectory
+	  (((FSDirectory)directory).getFile(), false);
+	if (dir != directory) {			  // not a cached instance
+	  dir.close();
+	  closeDir = false;
+	}
+      } else {
+	closeDir = false;
+      }
     }
+
+    boolean success = false;
+    try {
+      IndexReader result = open(directory, infos, oldReaders, closeDir);
+      result.deletionPolicy = reader.deletionPolicy;
+      success = true;
+      return result;
+    } finally {
+      if (!success && closeDir)
+	directory.close();			  // release our reference
+    }
+  }
+
+  /** Saves the deletions of <code>readers</code>, which read the segments
+    in <code>infos</code>, and commits them by writing and syncing a new
+    segments file.  Older commits are then passed to <code>policy</code>, as
+    by an {@link IndexWriter}, and the files of those it deletes are deleted
+    once no reader uses them.
+
+    <p>This requires the {@link IndexWriter#WRITE_LOCK_NAME} lock, so an
+    IOException is thrown if an IndexWriter is open on the index.  An
+    IOException is also thrown if another commit has been made since
+    <code>infos</code> was read; the deletions are then discarded, as they
+    would undo that commit. */
+  static void commitDeletions(Directory directory, SegmentInfos infos,
+			      SegmentReader[] readers,
+			      IndexDeletionPolicy policy) throws IOException {
+    Lock lock = directory.makeLock(IndexWriter.WRITE_LOCK_NAME);
+    if (!lock.obtain())
+      throw new IOException("Index locked for write: " + lock);
+    try {
+      if (SegmentInfos.latestGeneration(directory.list()) != infos.generation) {
+	for (int i = 0; i < readers.length; i++)
+	  readers[i].deletedDocsDirty = false;	  // discard deletions
+	throw new IOException("index changed since reader was opened");
+      }
+      if (policy == null)
+	policy = new KeepOnlyLastCommitDeletionPolicy();
+      IndexFileDeleter deleter = new IndexFileDeleter(directory, policy);
+      for (int i = 0; i < readers.length; i++) {
+	if (readers[i].saveDeletions())
+	  directory.sync(SegmentInfo.delFileName(infos.info(i).name,
+						 readers[i].delGen));
+	infos.info(i).delGen = readers[i].delGen;
+      }
+      infos.write(directory, "segments.new");
+      directory.sync("segments.new");
+      directory.sync(infos.install(directory, "segments.new"));
+      deleter.onCommit(infos);
+    } finally {
+      lock.release();
+    }
+  }
+
+  /** Returns readers for the segments in <code>infos</code>.  A reader from
+    <code>oldReaders</code> is shared for each segment that is unchanged;
+    other segments are opened.  If <code>closeDir</code> is true then the last
+    segment opened closes the directory. */
+  static SegmentReader[] openSegments(SegmentInfos infos,
+				      SegmentReader[] oldReaders,
+				      boolean closeDir) throws IOException {
+    SegmentReader[] readers = new SegmentReader[infos.size()];
+    int last = -1;
+    int i = 0;
+    try {
+      for (; i < infos.size(); i++) {
+	SegmentReader reader = find(oldReaders, infos.info(i));
+	if (reader != null) {
+	  reader = reader.share(infos.info(i));	  // share unchanged segment
+	} else {
+	  reader = new SegmentReader(infos.info(i));
+	  last = i;
+	}
+	readers[i] = reader;
+      }
+    } catch (IOException e) {
+      for (int j = 0; j < i; j++)
+	readers[j].close(false);		  // release those opened
+      throw e;
+    }
+    if (last >= 0)
+      readers[last].closeDirectory = closeDir;
+    return readers;
+  }
+
+  /** Returns true if each of <code>readers</code> is current for the
+    corresponding segment in <code>infos</code>. */
+  static boolean isCurrent(SegmentInfos infos, SegmentReader[] readers)
+       throws IOException {
+    if (infos.size() != readers.length)
+      return false;
+    for (int i = 0; i < readers.length; i++)
+      if (!readers[i].isCurrent(infos.info(i)))
+	return false;
+    return true;
+  }
+
+  private static SegmentReader find(SegmentReader[] readers, SegmentInfo si)
+       throws IOException {
+    for (int i = 0; i < readers.length; i++)
+      if (readers[i].isCurrent(si))
+	return readers[i];
+    return null;
   }
 
   /** Returns the time the index in the named directory was last modified. */
@@ -74,12 +303,17 @@ abstract public class IndexReader {
 
   /** Returns the time the index in the named directory was last modified. */
   public static long lastModified(File directory) throws IOException {
-    return FSDirectory.fileModified(directory, "segments");
+    String[] files = directory.list();
+    if (files == null)
+      throw new IOException(directory + " not a directory");
+    return FSDirectory.fileModified
+      (directory, SegmentInfos.fileName(SegmentInfos.latestGeneration(files)));
   }
 
   /** Returns the time the index in this directory was last modified. */
   public static long lastModified(Directory directory) throws IOException {
-    return directory.fileModified("segments");
+    return directory.fileModified
+      (SegmentInfos.fileName(SegmentInfos.latestGeneration(directory.list())));
   }
 
   /** Returns the number of documents in this index. */
@@ -93,15 +327,46 @@ abstract public class IndexReader {
       <code>Document</code> in this index. */
   abstract public Document document(int n) throws IOException;
 
+  /** Returns those stored fields of the <code>n</code><sup>th</sup>
+      <code>Document</code> in this index which are accepted by
+      <code>selector</code>.  Fields which are not needed are skipped without
+      being decoded, which is much faster when large fields are stored.
+
+      <p>The default implementation ignores the selector and returns all
+      fields. */
+  public Document document(int n, FieldSelector selector) throws IOException {
+    return document(n);
+  }
+
   /** Returns true if document <i>n</i> has been deleted */
   abstract public boolean isDeleted(int n);
 
   /** Returns the byte-encoded normalization factor for the named field of
-    every document.  This is used by the search code to score documents.
+    every document, or null if norms are not kept for the field.  This is
+    used by the search code to score documents.
+    @see com.lucene.document.Field#omitNorms()
     @see com.lucene.search.Similarity#norm
     */
   abstract public byte[] norms(String field) throws IOException;
 
+  /** Returns the numeric doc values of the named field, or null if no
+    document has a numeric doc value for it.  Values are read column-wise,
+    without inverting the field's terms.
+    @see com.lucene.document.Field#NumericDocValue */
+  public NumericDocValues getNumericDocValues(String field)
+       throws IOException {
+    return null;
+  }
+
+  /** Returns the sorted doc values of the named field, or null if no
+    document has a sorted doc value for it.  Values are read column-wise,
+    without inverting the field's terms.
+    @see com.lucene.document.Field#SortedDocValue */
+  public SortedDocValues getSortedDocValues(String field)
+       throws IOException {
+    return null;
+  }
+
   /** Returns an enumeration of all the terms in the index.
     The enumeration is ordered by Term.compareTo().  Each term
     is greater than all that precede it in the enumeration. 
@@ -173,7 +438,9 @@ abstract public class IndexReader {
   }
 
   /** Closes files associated with this index.
-    Also saves any new deletions to disk.
+    Also commits any new deletions, which requires that no {@link
+    IndexWriter} is open on the index and that it has not changed since this
+    was opened.
     No other methods should be called after this has been called. */
   abstract public void close() throws IOException;
 }
@@ -22,14 +22,19 @@ import java.io.IOException;
 import java.io.File;
 import java.io.PrintStream;
 import java.util.Vector;
+import java.util.Hashtable;
+import java.util.Enumeration;
 
 import com.lucene.store.Directory;
 import com.lucene.store.RAMDirectory;
 import com.lucene.store.FSDirectory;
-import com.lucene.store.InputStream;
-import com.lucene.store.OutputStream;
+import com.lucene.store.Lock;
 import com.lucene.document.Document;
 import com.lucene.analysis.Analyzer;
+import com.lucene.search.Query;
+import com.lucene.search.IndexSearcher;
+import com.lucene.search.HitCollector;
+import com.lucene.util.BitVector;
 
 /**
   An IndexWriter creates and maintains an index.
@@ -48,19 +53,33 @@ import com.lucene.analysis.Analyzer;
   */
 
 public final class IndexWriter {
+  /** The name of the lock held by a writer on its directory.
+    @see Directory#makeLock(String) */
+  public static final String WRITE_LOCK_NAME = "write.lock";
+
   private Directory directory;			  // where this index resides
+  private Lock writeLock;			  // held until closed
   private Analyzer analyzer;			  // how to analyze text
 
   private SegmentInfos segmentInfos = new SegmentInfos(); // the segments
+  private IndexFileDeleter deleter;		  // deletes unused files
   private final Directory ramDirectory = new RAMDirectory(); // for temp segs
 
+  // maps each Term to be deleted to the number of documents which preceded
+  // its deletion, so that only documents added before it are deleted
+  private Hashtable bufferedDeleteTerms = new Hashtable();
+  private Hashtable bufferedDeleteQueries = new Hashtable(); // likewise
+
+  private Hashtable syncedFiles = new Hashtable(); // files in last commit
+  private boolean commitPending = false;	  // prepareCommit() was called
+
   /** Constructs an IndexWriter for the index in <code>path</code>.  Text will
     be analyzed with <code>a</code>.  If <code>create</code> is true, then a
     new, empty index will be created in <code>d</code>, replacing the index
     already there, if any. */
   public IndexWriter(String path, Analyzer a, boolean create)
        throws IOException {
-    this(FSDirectory.getDirectory(path, create), a, create);
+    this(new File(path), a, create);
   }
 
   /** Constructs an IndexWriter for the index in <code>path</code>.  Text will
@@ -69,32 +88,179 @@ public final class IndexWriter {
     already there, if any. */
   public IndexWriter(File path, Analyzer a, boolean create)
        throws IOException {
-    this(FSDirectory.getDirectory(path, create), a, create);
+    this(directory(path, create), a, create);
+  }
+
+  /** Returns the directory at <code>path</code>, which is made if needed
+    when <code>create</code> is true.  Its files are not erased, as another
+    writer may hold its lock: the old index is only deleted once this writer
+    holds the lock and has committed the new, empty index. */
+  private static final Directory directory(File path, boolean create)
+       throws IOException {
+    if (create && !path.exists())
+      path.mkdir();
+    return FSDirectory.getDirectory(path, false);
   }
 
   /** Constructs an IndexWriter for the index in <code>d</code>.  Text will be
     analyzed with <code>a</code>.  If <code>create</code> is true, then a new,
     empty index will be created in <code>d</code>, replacing the index already
-    there, if any. */
+    there, if any, whose files are deleted once the write lock is obtained.
+    Older commits are deleted as soon as a new commit is made. */
   public IndexWriter(Directory d, Analyzer a, boolean create)
        throws IOException {
+    this(d, a, create, new KeepOnlyLastCommitDeletionPolicy());
+  }
+
+  /** Constructs an IndexWriter for the index in <code>d</code>, like {@link
+    #IndexWriter(Directory,Analyzer,boolean)}, whose commits are kept until
+    <code>policy</code> deletes them.
+
+    <p>A writer holds the directory's {@link #WRITE_LOCK_NAME} lock until it
+    is closed, so that no other writer, in this process or another, may
+    modify the index meanwhile.  If the lock is held, an IOException is
+    thrown.  Readers need no lock, as each opens a commit whose files are not
+    changed. */
+  public IndexWriter(Directory d, Analyzer a, boolean create,
+		     IndexDeletionPolicy policy) throws IOException {
     directory = d;
     analyzer = a;
 
-    synchronized (directory) {
-      if (create)
-	segmentInfos.write(directory);
-      else
+    Lock lock = directory.makeLock(WRITE_LOCK_NAME);
+    if (!lock.obtain())
+      throw new IOException("Index locked for write: " + lock);
+    boolean success = false;
+    try {
+      if (create) {
+	segmentInfos.counter = lastCounter(directory);
+	deleter = new IndexFileDeleter(directory, policy);
+	commit();				  // an empty first commit
+      } else {
 	segmentInfos.read(directory);
+	deleter = new IndexFileDeleter(directory, policy);
+	deleter.deleteUnused(segmentInfos);	  // e.g., left by a crash
+	syncedFiles = segmentFiles();		  // assume committed files synced
+      }
+      success = true;
+    } finally {
+      if (!success)
+	lock.release();
     }
+    writeLock = lock;
   }
 
-  /** Flushes all changes to an index, closes all associated files, and closes
-    the directory that the index is stored in. */
+  /** Flushes all changes to an index, commits them, closes all associated
+    files, releases the write lock, and closes the directory that the index
+    is stored in.  If the commit fails, the changes since the last commit are
+    lost, but the lock is still released and the directories closed. */
   public final synchronized void close() throws IOException {
+    try {
+      commit();
+    } finally {
+      ramDirectory.close();
+      writeLock.release();
+      directory.close();
+    }
+  }
+
+  /** Performs the first phase of a commit: flushes all buffered documents
+    and deletions, syncs every file written since the last commit, and writes,
+    but does not install, a new <code>segments</code> file.  The second
+    phase, {@link #commit()}, installs it, and the index may not be changed in
+    between.
+
+    <p>Only files which were not part of the previous commit are synced, so
+    the cost of a commit is proportional to the amount of data changed.
+    Merges, including those which flush buffered documents, change only this
+    writer's segments, not the index on disk, so readers opened with {@link
+    IndexReader#open(Directory)} see no changes until they are committed, and
+    a crash loses only the changes made since the last commit. */
+  public final synchronized void prepareCommit() throws IOException {
+    ensureNoPendingCommit();
+    flushDeletes();
     flushRamSegments();
-    ramDirectory.close();
-    directory.close();
+
+    Hashtable files = segmentFiles();
+    Enumeration names = files.keys();
+    while (names.hasMoreElements()) {
+      String name = (String)names.nextElement();
+      if (!syncedFiles.containsKey(name))
+	directory.sync(name);			  // new since last commit
+    }
+    syncedFiles = files;
+
+    segmentInfos.write(directory, "segments.new");
+    directory.sync("segments.new");
+    commitPending = true;
+  }
+
+  /** Commits all changes to the index, so that they are seen by newly opened
+    readers and survive a crash of the machine.  If {@link #prepareCommit()}
+    has not been called, it is called first. */
+  public final synchronized void commit() throws IOException {
+    if (!commitPending)
+      prepareCommit();
+    directory.sync(segmentInfos.install(directory, "segments.new"));
+    deleter.infoStream = infoStream;
+    deleter.onCommit(segmentInfos);
+    commitPending = false;
+  }
+
+  /** Returns the segment counter of the latest commit in
+    <code>directory</code>, if any, so that a new index does not reuse the
+    names of segments which its deletion policy may keep. */
+  private static final int lastCounter(Directory directory) {
+    SegmentInfos infos = new SegmentInfos();
+    try {
+      infos.read(directory);
+    } catch (IOException e) {			  // no index, or unreadable
+      return 0;
+    }
+    return infos.counter;
+  }
+
+  private final void ensureNoPendingCommit() {
+    if (commitPending)
+      throw new IllegalStateException("commit() must follow prepareCommit()");
+  }
+
+  /** Returns the names of the files of this index's segments. */
+  private final Hashtable segmentFiles() throws IOException {
+    Vector names = segmentInfos.files(directory);
+    Hashtable files = new Hashtable();
+    for (int i = 0; i < names.size(); i++)
+      files.put(names.elementAt(i), names.elementAt(i));
+    return files;
+  }
+
+  /** Returns a reader which searches every document added so far, including
+    those still buffered in RAM, without flushing or committing them.  This is
+    much faster than closing this writer and opening a new reader, and so
+    permits documents to be searched very soon after they are added.
+
+    <p>The reader sees the index as of this call; later additions are only
+    seen by readers returned by later calls.  It should be closed when no
+    longer needed, which does not close this writer's directory.  Documents
+    may not be deleted through it: its {@link IndexReader#delete(int)}
+    method throws UnsupportedOperationException, as documents are instead
+    deleted with {@link #deleteDocuments(Term)}.
+
+    <p>The reader's {@link IndexReader#reopen()} method calls this again,
+    sharing the segments which have not changed. */
+  public final IndexReader getReader() throws IOException {
+    return getReader(null, new SegmentReader[0]);
+  }
+
+  final synchronized IndexReader getReader(IndexReader reader,
+					   SegmentReader[] oldReaders)
+       throws IOException {
+    flushDeletes();
+    if (reader != null && IndexReader.isCurrent(segmentInfos, oldReaders))
+      return reader;				  // nothing has changed
+    SegmentsReader result = new SegmentsReader
+      (directory, IndexReader.openSegments(segmentInfos, oldReaders, false));
+    result.writer = this;
+    return result;
   }
 
   /** Returns the number of documents currently in this index. */
@@ -117,13 +283,172 @@ public final class IndexWriter {
 
   /** Adds a document to this index.*/
   public final void addDocument(Document doc) throws IOException {
+    addDocument(doc, null);
+  }
+
+  /** Deletes the documents containing <code>term</code>, then adds
+    <code>doc</code>.  If <code>term</code> holds a unique identifier for
+    each document then this replaces the document with that identifier.  No
+    reader obtained from this writer sees the index with the old document
+    deleted but the new one not yet added. */
+  public final void updateDocument(Term term, Document doc)
+       throws IOException {
+    addDocument(doc, term);
+  }
+
+  private final void addDocument(Document doc, Term deleteTerm)
+       throws IOException {
+    ensureNoPendingCommit();
     DocumentWriter dw =
       new DocumentWriter(ramDirectory, analyzer, maxFieldLength);
     String segmentName = newSegmentName();
     dw.addDocument(segmentName, doc);
     synchronized (this) {
+      if (deleteTerm != null)
+	bufferDelete(deleteTerm);
       segmentInfos.addElement(new SegmentInfo(segmentName, 1, ramDirectory));
       maybeMergeSegments();
+      maybeFlushDeletes();
+    }
+  }
+
+  /** Deletes all documents containing <code>term</code>.  Only documents
+    added before this call are deleted.
+
+    <p>Deletions are buffered in RAM and applied in batches: to the segments
+    being merged whenever segments are merged, and to all segments when
+    {@link #maxBufferedDeleteTerms} terms are buffered, and by {@link
+    #close()}, {@link #optimize()} and {@link #getReader()}.  This is much
+    faster than closing this writer to delete documents with an {@link
+    IndexReader}. */
+  public final synchronized void deleteDocuments(Term term)
+       throws IOException {
+    ensureNoPendingCommit();
+    bufferDelete(term);
+    maybeFlushDeletes();
+  }
+
+  /** Deletes all documents matching <code>query</code>.  Only documents
+    added before this call are deleted.  For example, all documents older
+    than a date may be deleted with a {@link com.lucene.search.RangeQuery}.
+
+    <p>Deletions are buffered as with {@link #deleteDocuments(Term)}.  When
+    applied, the query is run once against each segment, and its matches are
+    deleted as they are found, whatever their score. */
+  public final synchronized void deleteDocuments(Query query)
+       throws IOException {
+    ensureNoPendingCommit();
+    bufferedDeleteQueries.put(query, Integer.valueOf(maxDoc()));
+    maybeFlushDeletes();
+  }
+
+  /** Determines the number of terms and queries whose deletions are
+   * buffered before they are applied to every segment.  Larger values mean
+   * fewer passes over the index, but more RAM used.
+   *
+   * <p>The default value is 1000. */
+  public int maxBufferedDeleteTerms = 1000;
+
+  private final void bufferDelete(Term term) {
+    bufferedDeleteTerms.put(term, new Integer(maxDoc()));
+  }
+
+  private final int maxDoc() {
+    int count = 0;
+    for (int i = 0; i < segmentInfos.size(); i++)
+      count += segmentInfos.info(i).docCount;
+    return count;
+  }
+
+  private final void maybeFlushDeletes() throws IOException {
+    if (bufferedDeleteTerms.size() + bufferedDeleteQueries.size()
+	>= maxBufferedDeleteTerms)
+      flushDeletes();
+  }
+
+  /** Applies all buffered deletions, saving them for each segment. */
+  private final void flushDeletes() throws IOException {
+    if (bufferedDeleteTerms.size() == 0 && bufferedDeleteQueries.size() == 0)
+      return;
+    ensureNoPendingCommit();
+    int start = 0;
+    for (int i = 0; i < segmentInfos.size(); i++) {
+      SegmentInfo si = segmentInfos.info(i);
+      SegmentReader reader = new SegmentReader(si);
+      try {
+	applyDeletes(reader, start);
+      } finally {
+	reader.close();				  // saves deletions
+      }
+      si.delGen = reader.delGen;		  // committed with the segments
+      start += si.docCount;
+    }
+    bufferedDeleteTerms.clear();
+    bufferedDeleteQueries.clear();
+  }
+
+  /** Applies buffered deletions to a segment whose first document is
+    numbered <code>start</code>. */
+  private final void applyDeletes(final SegmentReader reader, int start)
+       throws IOException {
+    Enumeration terms = bufferedDeleteTerms.keys();
+    while (terms.hasMoreElements()) {
+      Term term = (Term)terms.nextElement();
+      int limit = ((Integer)bufferedDeleteTerms.get(term)).intValue();
+      if (limit <= start)
+	continue;				  // deleted before segment
+      TermDocs docs = reader.termDocs(term);
+      if (docs == null)
+	continue;
+      try {
+	while (docs.next()) {
+	  int doc = docs.doc();
+	  if (start + doc >= limit)
+	    break;				  // added after deletion
+	  reader.delete(doc);
+	}
+      } finally {
+	docs.close();
+      }
+    }
+
+    if (bufferedDeleteQueries.size() == 0)
+      return;
+    // the searcher is not closed, as that would close the reader
+    IndexSearcher searcher = new IndexSearcher(reader);
+    Enumeration queries = bufferedDeleteQueries.keys();
+    while (queries.hasMoreElements()) {
+      Query query = (Query)queries.nextElement();
+      final int limit =
+	((Integer)bufferedDeleteQueries.get(query)).intValue() - start;
+      if (limit <= 0)
+	continue;				  // deleted before segment
+      searcher.search(query, new HitCollector() {
+	  private BitVector deletedDocs = null;	  // got at first match
+	  public final void collect(int doc, float score) {
+	    if (doc >= limit)
+	      return;				  // added after deletion
+	    if (deletedDocs == null)
+	      deletedDocs = reader.deletedDocsForUpdate();
+	    deletedDocs.set(doc);
+	  }
+	});
+    }
+  }
+
+  /** Limits buffered deletions to documents numbered before
+    <code>start</code>. */
+  private final void limitDeletes(Hashtable deletes, int start) {
+    Enumeration keys = deletes.keys();
+    while (keys.hasMoreElements()) {
+      Object key = keys.nextElement();
+      int limit = ((Integer)deletes.get(key)).intValue();
+      if (limit > start) {
+	if (start == 0)
+	  deletes.remove(key);
+	else
+	  deletes.put(key, new Integer(start));
+      }
     }
   }
 
@@ -150,21 +475,71 @@ public final class IndexWriter {
    * <p>The default value is {@link Integer#MAX_VALUE}. */
   public int maxMergeDocs = Integer.MAX_VALUE;
 
+  /** Determines whether merged segments are written as a single compound
+   * file.  Each segment otherwise has seven files, plus one for each indexed
+   * field, all of which a reader keeps open.  Compound files thus greatly
+   * reduce the number of file descriptors used by readers of indexes with
+   * many fields or segments, at some small cost to indexing speed.
+   *
+   * <p>The default value is false. */
+  public boolean useCompoundFile = false;
+
   /** If non-null, information about merges will be printed to this. */
   public PrintStream infoStream = null;
 
   /** Merges all segments together into a single segment, optimizing an index
       for search. */
   public final synchronized void optimize() throws IOException {
+    flushDeletes();
     flushRamSegments();
     while (segmentInfos.size() > 1 ||
 	   (segmentInfos.size() == 1 &&
-	    SegmentReader.hasDeletions(segmentInfos.info(0)))){
+	    (segmentInfos.info(0).hasDeletions() ||
+	     segmentInfos.info(0).dir != directory))) { // e.g., added
       int minSegment = segmentInfos.size() - mergeFactor;
       mergeSegments(minSegment < 0 ? 0 : minSegment);
     }
   }
 
+  /** Merges segments until no more than <code>maxNumSegments</code> remain.
+    Each merge combines the adjacent segments with the fewest documents, up
+    to {@link #mergeFactor} at a time, so that large segments are rewritten
+    as little as possible and the remaining segments are of similar size.
+    This gives much of the search speed of {@link #optimize()} for much less
+    I/O.  Unlike {@link #optimize()}, deleted documents are only removed from
+    the segments which are merged. */
+  public final synchronized void optimize(int maxNumSegments)
+       throws IOException {
+    if (maxNumSegments < 1)
+      throw new IllegalArgumentException("maxNumSegments must be >= 1");
+    if (maxNumSegments == 1) {
+      optimize();
+      return;
+    }
+    flushDeletes();
+    flushRamSegments();
+    while (segmentInfos.size() > maxNumSegments) {
+      int count = segmentInfos.size() - maxNumSegments + 1;
+      if (count > mergeFactor)
+	count = mergeFactor;
+
+      int docs = 0;				  // find smallest window
+      for (int i = 0; i < count; i++)
+	docs += segmentInfos.info(i).docCount;
+      int minDocs = docs;
+      int minSegment = 0;
+      for (int i = count; i < segmentInfos.size(); i++) {
+	docs += segmentInfos.info(i).docCount;	  // slide window
+	docs -= segmentInfos.info(i - count).docCount;
+	if (docs < minDocs) {
+	  minDocs = docs;
+	  minSegment = i - count + 1;
+	}
+      }
+      mergeSegments(minSegment, minSegment + count, true);
+    }
+  }
+
   /** Merges all segments from an array of indexes into this index.
    *
    * <p>This may be used to parallelize batch indexing.  A large document
@@ -173,9 +548,11 @@ public final class IndexWriter {
    * complete index can then be created by merging sub-collection indexes
    * with this method.
    *
-   * <p>After this completes, the index is optimized. */
+   * <p>After this completes, the index is optimized.
+   * @see #addIndexes(Directory[],int) */
   public final synchronized void addIndexes(Directory[] dirs)
       throws IOException {
+    ensureNoPendingCommit();
     optimize();					  // start with zero or 1 seg
     int minSegment = segmentInfos.size();
     int segmentsAddedSinceMerge = 0;
@@ -195,6 +572,154 @@ public final class IndexWriter {
     optimize();					  // final cleanup
   }
 
+  /** Merges away the deleted documents of each segment where more than a
+    tenth of the documents are deleted.
+    @see #expungeDeletes(float) */
+  public final void expungeDeletes() throws IOException {
+    expungeDeletes(0.1f);
+  }
+
+  /** Merges away the deleted documents of each segment where the fraction of
+    documents deleted is more than <code>minDeletedRatio</code>.  Adjacent
+    such segments, up to {@link #mergeFactor} at a time, are merged together;
+    the other segments are left as they are.  This reclaims the space and
+    search time used by deleted documents at a fraction of the cost of {@link
+    #optimize()}. */
+  public final synchronized void expungeDeletes(float minDeletedRatio)
+       throws IOException {
+    flushDeletes();
+    flushRamSegments();
+    int maxSegment = segmentInfos.size();
+    while (maxSegment > 0) {			  // from the end, as merging
+      int minSegment = maxSegment;		  // renumbers later segments
+      while (minSegment > 0 && maxSegment - minSegment < mergeFactor &&
+	     deletedRatio(segmentInfos.info(minSegment-1)) > minDeletedRatio)
+	minSegment--;
+      if (minSegment < maxSegment)
+	mergeSegments(minSegment, maxSegment, true);
+      else
+	minSegment--;				  // skip this segment
+      maxSegment = minSegment;
+    }
+  }
+
+  private final float deletedRatio(SegmentInfo si) throws IOException {
+    if (!si.hasDeletions())
+      return 0.0f;
+    BitVector deletedDocs = new BitVector(si.dir, si.delFileName());
+    if (deletedDocs.size() == 0)
+      return 0.0f;
+    return (float)deletedDocs.count() / (float)deletedDocs.size();
+  }
+
+  /** Merges all segments from an array of indexes into this index, using
+   * up to <code>numThreads</code> threads.
+   *
+   * <p>The segments to be added are divided into <code>numThreads</code>
+   * groups of adjacent segments.  Each group is merged into a new segment by
+   * its own thread, concurrently with the others.  A final merge then
+   * combines these with the existing index.  Thus, when
+   * <code>numThreads</code> is less than {@link #mergeFactor}, every document
+   * is merged just twice, and all but the final merge use several processors.
+   *
+   * <p>If any group fails to merge, the files merged by every group are
+   * deleted, no segments are added, and the first failure is thrown.
+   *
+   * <p>After this completes, the index is optimized. */
+  public final synchronized void addIndexes(Directory[] dirs, int numThreads)
+      throws IOException {
+    if (numThreads < 1)
+      throw new IllegalArgumentException("numThreads must be >= 1");
+    ensureNoPendingCommit();
+    optimize();					  // start with zero or 1 seg
+
+    Vector infos = new Vector();
+    for (int i = 0; i < dirs.length; i++) {
+      SegmentInfos sis = new SegmentInfos();	  // read infos from dir
+      sis.read(dirs[i]);
+      for (int j = 0; j < sis.size(); j++)
+	infos.addElement(sis.info(j));
+    }
+    int groupSize = (infos.size() + numThreads - 1) / numThreads;
+    int groups = groupSize == 0 ? 0 : (infos.size() + groupSize - 1) / groupSize;
+
+    final SegmentInfo[] merged = new SegmentInfo[groups];
+    final Throwable[] error = new Throwable[1];
+    Thread[] threads = new Thread[groups];
+    String[] names = new String[groups];
+    for (int i = 0; i < groups; i++) {
+      final int group = i;
+      final String name = names[i] = newSegmentName();
+      final Vector groupInfos = new Vector();
+      for (int j = i * groupSize; j < infos.size() && j < (i+1) * groupSize; j++)
+	groupInfos.addElement(infos.elementAt(j));
+      threads[i] = new Thread("addIndexes " + name) {
+	  public void run() {
+	    try {
+	      merged[group] = mergeInto(name, groupInfos);
+	    } catch (Throwable t) {
+	      synchronized (error) {
+		if (error[0] == null)
+		  error[0] = t;			  // report first failure
+	      }
+	    }
+	  }
+	};
+      threads[i].start();
+    }
+    for (int i = 0; i < groups; i++) {
+      try {
+	threads[i].join();
+      } catch (InterruptedException e) {
+	throw new IOException("interrupted while merging");
+      }
+    }
+    if (error[0] != null) {			  // remove every group's output
+      String[] files = directory.list();
+      for (int i = 0; i < groups; i++) {
+	Vector groupFiles = new SegmentInfo(names[i], 0, directory).files(files);
+	for (int j = 0; j < groupFiles.size(); j++) {
+	  try {
+	    directory.deleteFile((String)groupFiles.elementAt(j));
+	  } catch (IOException e) {}		  // report the merge's error
+	}
+      }
+    }
+    if (error[0] instanceof IOException)
+      throw (IOException)error[0];
+    if (error[0] instanceof RuntimeException)
+      throw (RuntimeException)error[0];
+    if (error[0] instanceof Error)
+      throw (Error)error[0];
+
+    for (int i = 0; i < groups; i++)
+      if (merged[i] != null)
+	segmentInfos.addElement(merged[i]);
+    optimize();					  // final merge
+  }
+
+  /** Merges the segments in <code>infos</code> into a new segment named
+    <code>name</code>, leaving them unchanged.  Returns null if every
+    document was deleted.  This may be called by several threads at once. */
+  private final SegmentInfo mergeInto(String name, Vector infos)
+       throws IOException {
+    if (infoStream != null)
+      infoStream.println("merging " + infos.size() + " segments into " + name);
+    SegmentMerger merger = new SegmentMerger(directory, name);
+    int docCount = 0;
+    for (int i = 0; i < infos.size(); i++) {
+      SegmentReader reader = new SegmentReader((SegmentInfo)infos.elementAt(i));
+      merger.add(reader);
+      docCount += reader.numDocs();
+    }
+    merger.merge();
+    if (docCount == 0)
+      return null;				  // files deleted as unused
+    if (useCompoundFile)
+      merger.createCompoundFile();
+    return new SegmentInfo(name, docCount, directory);
+  }
+
   /** Merges all RAM-resident segments. */
   private final void flushRamSegments() throws IOException {
     int minSegment = segmentInfos.size()-1;
@@ -246,56 +771,63 @@ public final class IndexWriter {
     and pushes the merged index onto the top of the segmentInfos stack. */
   private final void mergeSegments(int minSegment, boolean delete)
       throws IOException {
+    mergeSegments(minSegment, segmentInfos.size(), delete);
+  }
+
+  /** Merges the segments from minSegment up to but not including maxSegment,
+    and puts the merged segment in their place. */
+  private final void mergeSegments(int minSegment, int maxSegment,
+				   boolean delete) throws IOException {
+    ensureNoPendingCommit();
+    if (maxSegment < segmentInfos.size())
+      flushDeletes();				  // later docs will be renumbered
     String mergedName = newSegmentName();
     int mergedDocCount = 0;
     if (infoStream != null) infoStream.print("merging segments");
     SegmentMerger merger = new SegmentMerger(directory, mergedName);
     Vector segmentsToDelete = new Vector();
-    for (int i = minSegment; i < segmentInfos.size(); i++) {
+    int minStart = 0;
+    for (int i = 0; i < minSegment; i++)
+      minStart += segmentInfos.info(i).docCount;
+    int start = minStart;
+    for (int i = minSegment; i < maxSegment; i++) {
       SegmentInfo si = segmentInfos.info(i);
       if (infoStream != null)
 	infoStream.print(" " + si.name + " (" + si.docCount + " docs)");
       SegmentReader reader = new SegmentReader(si);
+      applyDeletes(reader, start);		  // merge drops deleted docs
+      start += si.docCount;
       merger.add(reader);
       if (delete)
 	segmentsToDelete.addElement(reader);	  // queue for deletion
-      mergedDocCount += si.docCount;
+      mergedDocCount += reader.numDocs();	  // deleted docs are dropped
     }
     if (infoStream != null) {
       infoStream.println();
       infoStream.println(" into "+mergedName+" ("+mergedDocCount+" docs)");
     }
     merger.merge();
-
-    segmentInfos.setSize(minSegment);		  // pop old infos & add new
-    segmentInfos.addElement(new SegmentInfo(mergedName, mergedDocCount,
-					    directory));
-    
-    synchronized (directory) {
-      segmentInfos.write(directory);		  // commit before deleting
-      deleteSegments(segmentsToDelete);		  // delete now-unused segments
-    }
-  }
-
-  /* Some operating systems (e.g. Windows) don't permit a file to be deleted
-     while it is opened for read (e.g. by another process or thread).  So we
-     assume that when a delete fails it is because the file is open in another
-     process, and queue the file for subsequent deletion. */
-
-  private final void deleteSegments(Vector segments) throws IOException {
-    Vector deletable = new Vector();
-
-    deleteFiles(readDeleteableFiles(), deletable); // try to delete deleteable
-    
-    for (int i = 0; i < segments.size(); i++) {
-      SegmentReader reader = (SegmentReader)segments.elementAt(i);
-      if (reader.directory == this.directory)
-	deleteFiles(reader.files(), deletable);	  // try to delete our files
-      else
-	deleteFiles(reader.files(), reader.directory); // delete, eg, RAM files
+    if (useCompoundFile)
+      merger.createCompoundFile();
+
+    // buffered deletions are now only pending for the earlier segments
+    limitDeletes(bufferedDeleteTerms, minStart);
+    limitDeletes(bufferedDeleteQueries, minStart);
+
+    for (int i = maxSegment - 1; i >= minSegment; i--)
+      segmentInfos.removeElementAt(i);		  // remove old infos & add new
+    if (mergedDocCount > 0)			  // else every doc was deleted
+      segmentInfos.insertElementAt(new SegmentInfo(mergedName, mergedDocCount,
+						   directory), minSegment);
+
+    // the merged segments are only committed by commit(), so the deleter
+    // keeps their files while the last commit names them
+    deleter.deleteUnused(segmentInfos);
+    for (int i = 0; i < segmentsToDelete.size(); i++) {
+      SegmentReader reader = (SegmentReader)segmentsToDelete.elementAt(i);
+      if (reader.directory == ramDirectory)	  // not, e.g., added indexes
+	deleteFiles(reader.files(), reader.directory);
     }
-
-    writeDeleteableFiles(deletable);		  // note files we can't delete
   }
 
   private final void deleteFiles(Vector files, Directory directory)
@@ -303,47 +835,4 @@ public final class IndexWriter {
     for (int i = 0; i < files.size(); i++)
       directory.deleteFile((String)files.elementAt(i));
   }
-
-  private final void deleteFiles(Vector files, Vector deletable)
-       throws IOException {
-    for (int i = 0; i < files.size(); i++) {
-      String file = (String)files.elementAt(i);
-      try {
-	directory.deleteFile(file);		  // try to delete each file
-      } catch (IOException e) {			  // if delete fails
-	if (directory.fileExists(file)) {
-	  if (infoStream != null)
-	    infoStream.println(e.getMessage() + "; Will re-try later.");
-	  deletable.addElement(file);		  // add to deletable
-	}
-      }
-    }
-  }
-
-  private final Vector readDeleteableFiles() throws IOException {
-    Vector result = new Vector();
-    if (!directory.fileExists("deletable"))
-      return result;
-
-    InputStream input = directory.openFile("deletable");
-    try {
-      for (int i = input.readInt(); i > 0; i--)	  // read file names
-	result.addElement(input.readString());
-    } finally {
-      input.close();
-    }
-    return result;
-  }
-
-  private final void writeDeleteableFiles(Vector files) throws IOException {
-    OutputStream output = directory.createFile("deleteable.new");
-    try {
-      output.writeInt(files.size());
-      for (int i = 0; i < files.size(); i++)
-	output.writeString((String)files.elementAt(i));
-    } finally {
-      output.close();
-    }
-    directory.renameFile("deleteable.new", "deletable");
-  }
 }
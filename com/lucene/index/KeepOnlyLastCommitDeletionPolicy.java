@@ -0,0 +1,36 @@
+/* KeepOnlyLastCommitDeletionPolicy.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.util.Vector;
+
+/** Deletes every commit but the latest as soon as a new commit is made.
+  This is the default policy of an {@link IndexWriter}. */
+public final class KeepOnlyLastCommitDeletionPolicy
+  extends IndexDeletionPolicy {
+
+  public final void onInit(Vector commits) {
+    onCommit(commits);
+  }
+
+  public final void onCommit(Vector commits) {
+    for (int i = 0; i < commits.size() - 1; i++)
+      ((IndexCommit)commits.elementAt(i)).delete();
+  }
+}
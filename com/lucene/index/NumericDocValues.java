@@ -0,0 +1,33 @@
+/* NumericDocValues.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+
+/** Abstract class for accessing the numeric doc values of a field.
+
+  <p>Values are read from a column-wise file written at index time, so that
+  the value for any document may be retrieved in constant time.  Documents
+  without a value for the field have the value zero.
+  @see com.lucene.document.Field#NumericDocValue */
+
+public abstract class NumericDocValues {
+  /** Returns the value of document number <code>doc</code>. */
+  abstract public long get(int doc) throws IOException;
+}
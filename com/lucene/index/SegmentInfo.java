@@ -17,6 +17,7 @@
  * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
  */
 package com.lucene.index;
+import java.util.Vector;
 import com.lucene.store.Directory;
 
 public final class SegmentInfo {
@@ -24,9 +25,45 @@ public final class SegmentInfo {
   public int docCount;				  // number of docs in seg
   public Directory dir;				  // where segment resides
 
+  /** Generation of the deletions file: -1 if there is none, 0 for a ".del"
+    file written before generations were used. */
+  long delGen = -1;
+
   public SegmentInfo(String name, int docCount, Directory dir) {
     this.name = name;
     this.docCount = docCount;
     this.dir = dir;
   }
+
+  final boolean hasDeletions() {
+    return delGen >= 0;
+  }
+
+  /** Returns the name of the deletions file, or null if there is none.  Each
+    time deletions are saved a new file is written, so that a commit which
+    names an older file still sees the deletions it was made with. */
+  final String delFileName() {
+    return delFileName(name, delGen);
+  }
+
+  static final String delFileName(String segment, long gen) {
+    if (gen < 0)
+      return null;
+    if (gen == 0)
+      return segment + ".del";
+    return segment + "_" + Long.toString(gen, Character.MAX_RADIX) + ".del";
+  }
+
+  /** Returns the names of this segment's files among <code>names</code>,
+    which lists the files in its directory. */
+  final Vector files(String[] names) {
+    Vector files = new Vector(16);
+    String prefix = name + ".";
+    for (int i = 0; i < names.length; i++)
+      if (names[i].startsWith(prefix) && !names[i].endsWith(".del"))
+	files.addElement(names[i]);
+    if (hasDeletions())
+      files.addElement(delFileName());
+    return files;
+  }
 }
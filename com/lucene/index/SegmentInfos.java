@@ -19,24 +19,88 @@
 package com.lucene.index;
 import java.util.Vector;
 import java.io.IOException;
+import java.io.FileNotFoundException;
 import com.lucene.store.Directory;
 import com.lucene.store.InputStream;
 import com.lucene.store.OutputStream;
 
+/** The list of segments in an index.  Each commit writes it to a new file,
+  named "segments_" followed by its generation, so that older commits remain
+  readable until they are deleted.  Indexes written before generations were
+  used have a single file named "segments", whose generation is zero. */
 final class SegmentInfos extends Vector {
+  /** Marks the current file format.  The older format begins with the
+    counter, which is never negative. */
+  static final int FORMAT = -1;
+
   public int counter = 0;			  // used to name new segments
-  
+  long generation = -1;				  // of the file last read or written
+
   public final SegmentInfo info(int i) {
     return (SegmentInfo)elementAt(i);
   }
 
+  /** Returns the name of the segments file with the given generation. */
+  static final String fileName(long generation) {
+    if (generation == 0)
+      return "segments";
+    return "segments_" + Long.toString(generation, Character.MAX_RADIX);
+  }
+
+  /** Returns the generation of the named segments file, or -1 if it is not
+    a segments file. */
+  static final long generation(String fileName) {
+    if (fileName.equals("segments"))
+      return 0;
+    if (!fileName.startsWith("segments_"))
+      return -1;
+    try {
+      return Long.parseLong(fileName.substring(9), Character.MAX_RADIX);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Returns the latest generation among the named files, or -1 if none is a
+    segments file. */
+  static final long latestGeneration(String[] files) {
+    long max = -1;
+    for (int i = 0; i < files.length; i++) {
+      long gen = generation(files[i]);
+      if (gen > max)
+	max = gen;
+    }
+    return max;
+  }
+
+  /** Reads the latest segments file in <code>directory</code>. */
   public final void read(Directory directory) throws IOException {
-    InputStream input = directory.openFile("segments");
+    long gen = latestGeneration(directory.list());
+    if (gen < 0)
+      throw new FileNotFoundException("no segments file in " + directory);
+    read(directory, fileName(gen));
+  }
+
+  /** Reads the named segments file. */
+  final void read(Directory directory, String fileName) throws IOException {
+    generation = generation(fileName);
+    InputStream input = directory.openFile(fileName);
     try {
-      counter = input.readInt();		  // read counter
+      int format = input.readInt();
+      if (format < 0) {
+	if (format < FORMAT)
+	  throw new IOException("unknown format " + format + " in " + fileName);
+	counter = input.readInt();		  // read counter
+      } else {
+	counter = format;			  // older format: no header
+      }
       for (int i = input.readInt(); i > 0; i--) { // read segmentInfos
 	SegmentInfo si = new SegmentInfo(input.readString(), input.readInt(),
 					 directory);
+	if (format < 0)
+	  si.delGen = input.readLong();
+	else if (directory.fileExists(si.name + ".del"))
+	  si.delGen = 0;
 	addElement(si);
       }
     } finally {
@@ -44,21 +108,68 @@ final class SegmentInfos extends Vector {
     }
   }
 
+  /** Writes these infos to a new segments file, whose generation follows
+    that last read or written. */
   public final void write(Directory directory) throws IOException {
-    OutputStream output = directory.createFile("segments.new");
+    write(directory, "segments.new");
+    install(directory, "segments.new");
+  }
+
+  /** Writes these infos to the named file, which may later be installed by
+    {@link #install(Directory,String)}. */
+  final void write(Directory directory, String name) throws IOException {
+    OutputStream output = directory.createFile(name);
     try {
+      output.writeInt(FORMAT);
       output.writeInt(counter);			  // write counter
       output.writeInt(size());			  // write infos
       for (int i = 0; i < size(); i++) {
 	SegmentInfo si = info(i);
 	output.writeString(si.name);
 	output.writeInt(si.docCount);
+	output.writeLong(si.delGen);
       }
     } finally {
       output.close();
     }
+  }
+
+  /** Renames the named file to the next segments file, returning its name. */
+  final String install(Directory directory, String name) throws IOException {
+    long next = currentGeneration(directory) + 1;
+    String fileName = fileName(next);
+    directory.renameFile(name, fileName);
+    generation = next;
+    return fileName;
+  }
 
-    // install new segment info
-    directory.renameFile("segments.new", "segments");
+  /** Returns the generation of these infos, or, if they have none, the
+    latest in <code>directory</code>. */
+  private final long currentGeneration(Directory directory)
+       throws IOException {
+    if (generation < 0)
+      generation = latestGeneration(directory.list());
+    return generation < 0 ? 0 : generation;
+  }
+
+  /** Returns the names of the files of those segments in
+    <code>directory</code>, excluding the segments file itself. */
+  final Vector files(Directory directory) throws IOException {
+    return files(directory, directory.list());
+  }
+
+  /** Like {@link #files(Directory)}, given the names of the files in
+    <code>directory</code>. */
+  final Vector files(Directory directory, String[] names) {
+    Vector files = new Vector();
+    for (int i = 0; i < size(); i++) {
+      SegmentInfo si = info(i);
+      if (si.dir == directory) {
+	Vector segmentFiles = si.files(names);
+	for (int j = 0; j < segmentFiles.size(); j++)
+	  files.addElement(segmentFiles.elementAt(j));
+      }
+    }
+    return files;
   }
 }
@@ -28,6 +28,10 @@ final class SegmentMergeInfo {
   SegmentTermPositions postings;
   int[] docMap = null;				  // maps around deleted docs
 
+  private SegmentTermEnum ahead = null;		  // next term, if looking ahead
+  long freqEnd;					  // end of term's .frq data
+  long proxEnd;					  // end of term's .prx data
+
   SegmentMergeInfo(int b, SegmentTermEnum te, SegmentReader r)
     throws IOException {
     base = b;
@@ -35,6 +39,10 @@ final class SegmentMergeInfo {
     termEnum = te;
     term = te.term();
     postings = new SegmentTermPositions(r);
+    postings.freqStream.close();		  // read postings sequentially
+    postings.freqStream = r.openMergeStream(".frq");
+    postings.proxStream.close();
+    postings.proxStream = r.openMergeStream(".prx");
 
     if (reader.deletedDocs != null) {
       // build array which maps document numbers around deletions 
@@ -51,9 +59,26 @@ final class SegmentMergeInfo {
     }
   }
 
+  /** Keeps a second enumeration one term ahead, so that {@link #freqEnd}
+    and {@link #proxEnd} are set for each term.  Must be called before the
+    first call to {@link #next()}. */
+  final void lookAhead() throws IOException {
+    ahead = (SegmentTermEnum)termEnum.clone();
+    ahead.next();
+  }
+
   final boolean next() throws IOException {
     if (termEnum.next()) {
       term = termEnum.term();
+      if (ahead != null) {
+	if (ahead.next()) {			  // postings end where next start
+	  freqEnd = ahead.freqPointer();
+	  proxEnd = ahead.proxPointer();
+	} else {				  // last term: end of files
+	  freqEnd = postings.freqStream.length();
+	  proxEnd = postings.proxStream.length();
+	}
+      }
       return true;
     } else {
       term = null;
@@ -63,6 +88,8 @@ final class SegmentMergeInfo {
 
   final void close() throws IOException {
     termEnum.close();
+    if (ahead != null)
+      ahead.close();
     postings.close();
   }
 }
@@ -19,12 +19,15 @@
 package com.lucene.index;
 
 import java.util.Vector;
+import java.util.Hashtable;
+import java.util.Enumeration;
 import java.io.IOException;
 
 import com.lucene.store.Directory;
 import com.lucene.store.OutputStream;
 import com.lucene.store.InputStream;
 import com.lucene.document.Document;
+import com.lucene.document.Field;
 import com.lucene.util.PriorityQueue;
 import com.lucene.util.BitVector;
 
@@ -53,15 +56,36 @@ public final class SegmentMerger {
       mergeFields();
       mergeTerms();
       mergeNorms();
-      
+      mergeDocValues();
+
     } finally {
+      // deletions made while merging are dropped by the merge, so they are
+      // not saved, which would write deletions files for segments being
+      // merged away, or into the directories passed to addIndexes
       for (int i = 0; i < readers.size(); i++) {  // close readers
 	SegmentReader reader = (SegmentReader)readers.elementAt(i);
-	reader.close();
+	reader.close(false);
       }
     }
   }
 
+  /** Packs the files of the merged segment into a single ".cfs" file, then
+    deletes them.  Must be called after {@link #merge()}. */
+  public final void createCompoundFile() throws IOException {
+    CompoundFileWriter cfsWriter =
+      new CompoundFileWriter(directory, segment + ".cfs");
+    String[] extensions = { ".fnm", ".fdx", ".fdt", ".tii", ".tis",
+			    ".frq", ".prx", ".nrm", ".dv" };
+    for (int i = 0; i < extensions.length; i++)
+      if (directory.fileExists(segment + extensions[i]))
+	cfsWriter.addFile(segment + extensions[i]);
+    cfsWriter.close();
+
+    Vector files = cfsWriter.files();		  // delete packed files
+    for (int i = 0; i < files.size(); i++)
+      directory.deleteFile((String)files.elementAt(i));
+  }
+
   private final void mergeFields() throws IOException {
     fieldInfos = new FieldInfos();		  // merge field names
     for (int i = 0; i < readers.size(); i++) {
@@ -76,6 +100,13 @@ public final class SegmentMerger {
       for (int i = 0; i < readers.size(); i++) {
 	SegmentReader reader = (SegmentReader)readers.elementAt(i);
 	BitVector deletedDocs = reader.deletedDocs;
+	if (reader.fieldsReader.isBlocked() &&
+	    sameFieldNumbers(reader.fieldInfos)) {
+	  synchronized (reader.fieldsReader) {	  // copy bytes as is
+	    fieldsWriter.addDocuments(reader.fieldsReader, deletedDocs);
+	  }
+	  continue;
+	}
 	int maxDoc = reader.maxDoc();
 	for (int j = 0; j < maxDoc; j++)
 	  if (deletedDocs == null || !deletedDocs.get(j)) // skip deleted docs
@@ -86,6 +117,15 @@ public final class SegmentMerger {
     }
   }
 
+  /** True iff each field of <code>other</code> has the same number in the
+    merged fields, so that stored fields may be copied without renumbering. */
+  private final boolean sameFieldNumbers(FieldInfos other) {
+    for (int i = 0; i < other.size(); i++)
+      if (other.fieldName(i) != fieldInfos.fieldName(i))
+	return false;				  // names are interned
+    return true;
+  }
+
   private OutputStream freqOutput = null;
   private OutputStream proxOutput = null;
   private TermInfosWriter termInfosWriter = null;
@@ -93,8 +133,8 @@ public final class SegmentMerger {
 
   private final void mergeTerms() throws IOException {
     try {
-      freqOutput = directory.createFile(segment + ".frq");
-      proxOutput = directory.createFile(segment + ".prx");
+      freqOutput = directory.createMergeFile(segment + ".frq");
+      proxOutput = directory.createMergeFile(segment + ".prx");
       termInfosWriter =
 	new TermInfosWriter(directory, segment, fieldInfos);
       
@@ -116,6 +156,8 @@ public final class SegmentMerger {
       SegmentTermEnum termEnum = (SegmentTermEnum)reader.terms();
       SegmentMergeInfo smi = new SegmentMergeInfo(base, termEnum, reader);
       base += reader.numDocs();
+      if (smi.docMap == null)
+	smi.lookAhead();			  // for raw postings copies
       if (smi.next())
 	queue.put(smi);				  // initialize queue
       else
@@ -165,6 +207,7 @@ public final class SegmentMerger {
        
   private final int appendPostings(SegmentMergeInfo[] smis, int n)
        throws IOException {
+    int indexOptions = fieldInfos.fieldInfo(smis[0].term.field).indexOptions;
     int lastDoc = 0;
     int df = 0;					  // number of docs w/ term
     for (int i = 0; i < n; i++) {
@@ -173,7 +216,15 @@ public final class SegmentMerger {
       int base = smi.base;
       int[] docMap = smi.docMap;
       smi.termEnum.termInfo(termInfo);
-      postings.seek(termInfo);
+      postings.seek(termInfo, smi.term);
+
+      if (docMap == null && indexOptions ==
+	  smi.reader.fieldInfos.fieldInfo(smi.term.field).indexOptions) {
+	lastDoc = copyPostings(smi, lastDoc, indexOptions, i == n-1);
+	df += termInfo.docFreq;
+	continue;
+      }
+
       while (postings.next()) {
 	int doc;
 	if (docMap == null)
@@ -184,6 +235,13 @@ public final class SegmentMerger {
 	if (doc < lastDoc)
 	  throw new IllegalStateException("docs out of order");
 
+	df++;
+	if (indexOptions == Field.DOCS_ONLY) {
+	  freqOutput.writeVInt(doc - lastDoc);	  // write doc only
+	  lastDoc = doc;
+	  continue;
+	}
+
 	int docCode = (doc - lastDoc) << 1;	  // use low bit to flag freq=1
 	lastDoc = doc;
 
@@ -194,6 +252,8 @@ public final class SegmentMerger {
 	  freqOutput.writeVInt(docCode);	  // write doc
 	  freqOutput.writeVInt(freq);		  // write frequency in doc
 	}
+	if (indexOptions == Field.DOCS_AND_FREQS)
+	  continue;				  // positions are omitted
 	  
 	int lastPosition = 0;			  // write position deltas
 	for (int j = 0; j < freq; j++) {
@@ -201,39 +261,192 @@ public final class SegmentMerger {
 	  proxOutput.writeVInt(position - lastPosition);
 	  lastPosition = position;
 	}
-
-	df++;
       }
     }
     return df;
   }
 
+  private byte[] copyBuffer = null;
+
+  /** Appends a term's postings from a segment without deletions.  Only the
+    first document delta is re-encoded; the rest of the .frq data and all of
+    the .prx data are copied as raw bytes.  Returns the last document
+    number, which is only computed when more segments follow. */
+  private final int copyPostings(SegmentMergeInfo smi, int lastDoc,
+				 int indexOptions, boolean last)
+       throws IOException {
+    InputStream freqStream = smi.postings.freqStream;
+    int docFreq = termInfo.docFreq;
+
+    int doc;					  // re-encode first doc
+    int freq = 1;
+    if (indexOptions == Field.DOCS_ONLY) {
+      doc = freqStream.readVInt();
+      freqOutput.writeVInt(smi.base + doc - lastDoc);
+    } else {
+      int docCode = freqStream.readVInt();
+      doc = docCode >>> 1;
+      if ((docCode & 1) == 0)
+	freq = freqStream.readVInt();
+      docCode = (smi.base + doc - lastDoc) << 1;
+      if (freq == 1) {
+	freqOutput.writeVInt(docCode | 1);
+      } else {
+	freqOutput.writeVInt(docCode);
+	freqOutput.writeVInt(freq);
+      }
+    }
+    if (smi.base + doc < lastDoc)
+      throw new IllegalStateException("docs out of order");
+
+    long start = freqStream.getFilePointer();
+    if (!last) {				  // scan for last doc
+      for (int i = 1; i < docFreq; i++) {
+	if (indexOptions == Field.DOCS_ONLY) {
+	  doc += freqStream.readVInt();
+	} else {
+	  int docCode = freqStream.readVInt();
+	  doc += docCode >>> 1;
+	  if ((docCode & 1) == 0)
+	    freqStream.readVInt();
+	}
+      }
+    }
+    copyBytes(freqStream, start, smi.freqEnd, freqOutput);
+
+    if (indexOptions == Field.DOCS_AND_FREQS_AND_POSITIONS)
+      copyBytes(smi.postings.proxStream, termInfo.proxPointer, smi.proxEnd,
+		proxOutput);
+
+    return smi.base + doc;
+  }
+
+  private final void copyBytes(InputStream input, long start, long end,
+			       OutputStream output) throws IOException {
+    if (copyBuffer == null)
+      copyBuffer = new byte[InputStream.MERGE_BUFFER_SIZE];
+    input.seek(start);
+    long remaining = end - start;
+    while (remaining > 0) {
+      int len = (int)Math.min(remaining, copyBuffer.length);
+      input.readBytes(copyBuffer, 0, len);
+      output.writeBytes(copyBuffer, len);
+      remaining -= len;
+    }
+  }
+
   private final void mergeNorms() throws IOException {
-    for (int i = 0; i < fieldInfos.size(); i++) {
-      FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed) {
-	OutputStream output = directory.createFile(segment + ".f" + i);
-	try {
+    OutputStream output = directory.createMergeFile(segment + ".nrm");
+    try {
+      output.writeBytes(SegmentReader.NORMS_HEADER,
+			SegmentReader.NORMS_HEADER.length);
+      byte[] norms = null;
+      for (int i = 0; i < fieldInfos.size(); i++) {
+	FieldInfo fi = fieldInfos.fieldInfo(i);
+	if (fi.isIndexed && !fi.omitNorms) {	  // in field number order
 	  for (int j = 0; j < readers.size(); j++) {
 	    SegmentReader reader = (SegmentReader)readers.elementAt(j);
 	    BitVector deletedDocs = reader.deletedDocs;
-	    InputStream input = reader.normStream(fi.name);
-            int maxDoc = reader.maxDoc();
-	    try {
-	      for (int k = 0; k < maxDoc; k++) {
-		byte norm = input != null ? input.readByte() : (byte)0;
-		if (deletedDocs == null || !deletedDocs.get(k))
-		  output.writeByte(norm);
-	      }
-	    } finally {
-	      if (input != null)
-		input.close();
+	    int maxDoc = reader.maxDoc();
+	    if (norms == null || norms.length < maxDoc)
+	      norms = new byte[maxDoc];
+	    else
+	      for (int k = 0; k < maxDoc; k++)	  // zeros if no norms
+		norms[k] = 0;
+	    reader.norms(fi.name, norms, 0);	  // bulk read
+
+	    int count = maxDoc;
+	    if (deletedDocs != null) {		  // squeeze out deleted docs
+	      count = 0;
+	      for (int k = 0; k < maxDoc; k++)
+		if (!deletedDocs.get(k))
+		  norms[count++] = norms[k];
 	    }
+	    output.writeBytes(norms, count);	  // bulk write
 	  }
-	} finally {
-	  output.close();
+	}
+      }
+    } finally {
+      output.close();
+    }
+  }
+
+  private final void mergeDocValues() throws IOException {
+    Hashtable types = new Hashtable();		  // merge field names & types
+    for (int i = 0; i < readers.size(); i++) {
+      SegmentReader reader = (SegmentReader)readers.elementAt(i);
+      if (reader.docValues == null)
+	continue;
+      Enumeration fields = reader.docValues.fields();
+      while (fields.hasMoreElements()) {
+	String field = (String)fields.nextElement();
+	Integer type = Integer.valueOf(reader.docValues.type(field));
+	Integer other = (Integer)types.put(field, type);
+	if (other != null && !other.equals(type))
+	  throw new IllegalStateException("field " + field +
+					  " has doc values of two types");
+      }
+    }
+    if (types.size() == 0)
+      return;					  // no doc values
+
+    int maxDoc = 0;				  // count docs after merge
+    for (int i = 0; i < readers.size(); i++)
+      maxDoc += ((SegmentReader)readers.elementAt(i)).numDocs();
+
+    DocValuesWriter docValues = new DocValuesWriter(directory, segment);
+    try {
+      Enumeration fields = types.keys();
+      while (fields.hasMoreElements()) {
+	String field = (String)fields.nextElement();
+	if (((Integer)types.get(field)).intValue() == Field.NUMERIC_DOC_VALUES)
+	  docValues.addNumeric(field, mergeNumeric(field, maxDoc));
+	else
+	  mergeSorted(docValues, field, maxDoc);
+      }
+    } finally {
+      docValues.close();
+    }
+  }
+
+  private final long[] mergeNumeric(String field, int maxDoc)
+       throws IOException {
+    long[] values = new long[maxDoc];
+    int doc = 0;
+    for (int i = 0; i < readers.size(); i++) {
+      SegmentReader reader = (SegmentReader)readers.elementAt(i);
+      BitVector deletedDocs = reader.deletedDocs;
+      NumericDocValues sub = reader.getNumericDocValues(field);
+      int readerMaxDoc = reader.maxDoc();
+      for (int j = 0; j < readerMaxDoc; j++)
+	if (deletedDocs == null || !deletedDocs.get(j)) // skip deleted docs
+	  values[doc++] = sub != null ? sub.get(j) : 0L;
+    }
+    return values;
+  }
+
+  private final void mergeSorted(DocValuesWriter docValues,
+				 String field, int maxDoc)
+       throws IOException {
+    SortedDocValues[] subs = new SortedDocValues[readers.size()];
+    for (int i = 0; i < readers.size(); i++)
+      subs[i] = ((SegmentReader)readers.elementAt(i)).getSortedDocValues(field);
+    int[][] ordMaps = new int[subs.length][];
+    String[] values = DocValuesWriter.mergeValues(subs, ordMaps);
+
+    int[] ords = new int[maxDoc];
+    int doc = 0;
+    for (int i = 0; i < readers.size(); i++) {
+      SegmentReader reader = (SegmentReader)readers.elementAt(i);
+      BitVector deletedDocs = reader.deletedDocs;
+      int readerMaxDoc = reader.maxDoc();
+      for (int j = 0; j < readerMaxDoc; j++) {
+	if (deletedDocs == null || !deletedDocs.get(j)) { // skip deleted docs
+	  int ord = subs[i] != null ? subs[i].getOrd(j) : -1;
+	  ords[doc++] = ord == -1 ? -1 : ordMaps[i][ord];
 	}
       }
     }
+    docValues.addSorted(field, values, ords);
   }
 }
@@ -27,30 +27,51 @@ import com.lucene.util.BitVector;
 import com.lucene.store.Directory;
 import com.lucene.store.InputStream;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
+import com.lucene.search.Similarity;
 
 public final class SegmentReader extends IndexReader {
   Directory directory;
-  private boolean closeDirectory = false;
+  boolean closeDirectory = false;
   private String segment;
+  private int[] refCount = { 1 };		  // readers sharing these files
+
+  private CompoundFileReader cfsReader = null;	  // null if not compound
 
   FieldInfos fieldInfos;
-  private FieldsReader fieldsReader;
+  FieldsReader fieldsReader;
 
   TermInfosReader tis;
   
   BitVector deletedDocs = null;
-  private boolean deletedDocsDirty = false;
+  boolean deletedDocsDirty = false;
+  private boolean deletedDocsShared = false;	  // copied before changing
+  long delGen;					  // of the deletions file
+
+  private Vector files;				  // counted by IndexFileRefs
 
   private InputStream freqStream;
   private InputStream proxStream;
 
+  DocValuesReader docValues = null;
+
+
+  /** Header of a ".nrm" file, which holds the norms of every indexed field,
+    in field number order, each with one byte per document.  Older segments
+    have instead one ".fN" file per indexed field. */
+  static final byte[] NORMS_HEADER = { 'N', 'R', 'M', -1 };
 
   private static class Norm {
-    public Norm(InputStream in) { this.in = in; }
+    public Norm(InputStream in, long offset) {
+      this.in = in;
+      this.offset = offset;
+    }
     public InputStream in;
+    public long offset;				  // start of norms in file
     public byte[] bytes;
   }
   private Hashtable norms = new Hashtable();
+  private InputStream normsStream = null;	  // the ".nrm" file, if any
 
   public SegmentReader(SegmentInfo si, boolean closeDir)
        throws IOException {
@@ -63,28 +84,112 @@ public final class SegmentReader extends IndexReader {
     directory = si.dir;
     segment = si.name;
 
-    fieldInfos = new FieldInfos(directory, segment + ".fnm");
-    fieldsReader = new FieldsReader(directory, segment, fieldInfos);
+    // segment files are read from the compound file, if any, but
+    // deletions are always kept in a separate file
+    Directory cfsDir = directory;
+    if (directory.fileExists(segment + ".cfs")) {
+      cfsReader = new CompoundFileReader(directory, segment + ".cfs");
+      cfsDir = cfsReader;
+    }
+
+    fieldInfos = new FieldInfos(cfsDir, segment + ".fnm");
+    fieldsReader = new FieldsReader(cfsDir, segment, fieldInfos);
 
-    tis = new TermInfosReader(directory, segment, fieldInfos);
+    tis = new TermInfosReader(cfsDir, segment, fieldInfos);
 
-    if (hasDeletions(si))
-      deletedDocs = new BitVector(directory, segment + ".del");
+    delGen = si.delGen;
+    if (si.hasDeletions())
+      deletedDocs = new BitVector(directory, si.delFileName());
 
     // make sure that all index files have been read or are kept open
     // so that if an index update removes them we'll still have them
-    freqStream = directory.openFile(segment + ".frq");
-    proxStream = directory.openFile(segment + ".prx");
-    openNorms();
+    freqStream = cfsDir.openFile(segment + ".frq");
+    proxStream = cfsDir.openFile(segment + ".prx");
+    openNorms(cfsDir);
+
+    if (cfsDir.fileExists(segment + ".dv"))
+      docValues = new DocValuesReader(cfsDir, segment);
+
+    files = files();
+    IndexFileRefs.incRef(directory, files);	  // not deleted until closed
+  }
+
+  /** Constructs a reader sharing the files of <code>other</code>. */
+  private SegmentReader(SegmentReader other) {
+    directory = other.directory;
+    closeDirectory = other.closeDirectory;
+    segment = other.segment;
+    refCount = other.refCount;
+    cfsReader = other.cfsReader;
+    fieldInfos = other.fieldInfos;
+    fieldsReader = other.fieldsReader;
+    tis = other.tis;
+    delGen = other.delGen;
+    files = other.files;
+    freqStream = other.freqStream;
+    proxStream = other.proxStream;
+    docValues = other.docValues;
+    norms = other.norms;
+    normsStream = other.normsStream;
+    synchronized (refCount) {
+      refCount[0]++;
+    }
   }
   
-  public final synchronized void close() throws IOException {
-    if (deletedDocsDirty) {
-      synchronized (directory) {
-	deletedDocs.write(directory, segment + ".tmp");
-	directory.renameFile(segment + ".tmp", segment + ".del");
-      }
-      deletedDocsDirty = false;
+  /** Opens a new stream reading one of this segment's files, for use while
+    merging. */
+  final InputStream openMergeStream(String extension) throws IOException {
+    if (cfsReader != null)
+      return cfsReader.openFile(segment + extension,
+				InputStream.MERGE_BUFFER_SIZE);
+    return directory.openMergeFile(segment + extension);
+  }
+
+  /** Returns true if this reads the segment described by <code>si</code> and
+    its deletions have not since been changed by another reader. */
+  final synchronized boolean isCurrent(SegmentInfo si) {
+    return si.dir == directory && si.name.equals(segment)
+      && si.delGen == delGen;
+  }
+
+  /** Returns a new reader of the segment described by <code>si</code>,
+    which this reader is current for.  It shares this reader's files, term
+    index and norms, which are closed once both readers are closed.  It has
+    the deletions which were committed, which are shared until either reader
+    deletes a document, so that neither sees the other's later deletions. */
+  final synchronized SegmentReader share(SegmentInfo si) throws IOException {
+    SegmentReader reader = new SegmentReader(this);
+    if (deletedDocsDirty) {			  // not committed
+      if (si.hasDeletions())
+	reader.deletedDocs = new BitVector(directory, si.delFileName());
+    } else if (deletedDocs != null) {
+      reader.deletedDocs = deletedDocs;
+      reader.deletedDocsShared = deletedDocsShared = true;
+    }
+    return reader;
+  }
+
+  /** Saves any new deletions.  Files are closed once every reader sharing
+    this has closed it. */
+  public final void close() throws IOException {
+    close(true);
+  }
+
+  /** If <code>commit</code> is true, saves any new deletions, and, if this
+    was returned by {@link IndexReader#open}, commits them.  If they cannot
+    be committed then this remains open. */
+  final synchronized void close(boolean commit) throws IOException {
+    if (commit) {
+      if (segmentInfos == null)
+	saveDeletions();			  // e.g., opened by a writer
+      else if (deletedDocsDirty)
+	commitDeletions(directory, segmentInfos, new SegmentReader[] { this },
+			deletionPolicy);
+    }
+
+    synchronized (refCount) {
+      if (--refCount[0] > 0)
+	return;					  // still shared
     }
 
     fieldsReader.close();
@@ -97,23 +202,63 @@ public final class SegmentReader extends IndexReader {
 
     closeNorms();
 
+    if (docValues != null)
+      docValues.close();
+
+    if (cfsReader != null)
+      cfsReader.close();
+
+    IndexFileRefs.decRef(directory, files);
+
     if (closeDirectory)
       directory.close();
   }
 
-  final static boolean hasDeletions(SegmentInfo si) throws IOException {
-    return si.dir.fileExists(si.name + ".del");
+  /** Writes any new deletions to a new deletions file, never replacing one
+    which a commit may name.  Returns true if a file was written. */
+  final synchronized boolean saveDeletions() throws IOException {
+    if (!deletedDocsDirty)
+      return false;
+    long gen = delGen < 1 ? 1 : delGen + 1;
+    while (directory.fileExists(SegmentInfo.delFileName(segment, gen)))
+      gen++;					  // written by another reader
+    deletedDocs.write(directory, SegmentInfo.delFileName(segment, gen));
+    delGen = gen;
+    deletedDocsDirty = false;
+    return true;
+  }
+
+  public final IndexReader reopen() throws IOException {
+    return IndexReader.reopen(this, directory, new SegmentReader[] { this });
   }
 
   public final synchronized void delete(int docNum) throws IOException {
+    deletedDocsForUpdate().set(docNum);
+  }
+
+  /** Returns the deleted documents, which the caller may then add to
+    directly.  They are marked as changed, to be saved on close. */
+  final synchronized BitVector deletedDocsForUpdate() {
     if (deletedDocs == null)
       deletedDocs = new BitVector(maxDoc());
+    else if (deletedDocsShared) {		  // copy on write
+      deletedDocs = (BitVector)deletedDocs.clone();
+      deletedDocsShared = false;
+    }
     deletedDocsDirty = true;
-    deletedDocs.set(docNum);
+    return deletedDocs;
   }
 
   final Vector files() throws IOException {
     Vector files = new Vector(16);
+    String delFileName = SegmentInfo.delFileName(segment, delGen);
+    if (cfsReader != null) {
+      files.addElement(segment + ".cfs");
+      if (delFileName != null)
+	files.addElement(delFileName);
+      return files;
+    }
+
     files.addElement(segment + ".fnm");
     files.addElement(segment + ".fdx");
     files.addElement(segment + ".fdt");
@@ -122,13 +267,19 @@ public final class SegmentReader extends IndexReader {
     files.addElement(segment + ".frq");
     files.addElement(segment + ".prx");
 
-    if (directory.fileExists(segment + ".del"))
-      files.addElement(segment + ".del");
-
-    for (int i = 0; i < fieldInfos.size(); i++) {
-      FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed)
-	files.addElement(segment + ".f" + i);
+    if (delFileName != null)
+      files.addElement(delFileName);
+    if (docValues != null)
+      files.addElement(segment + ".dv");
+
+    if (directory.fileExists(segment + ".nrm"))
+      files.addElement(segment + ".nrm");
+    else {
+      for (int i = 0; i < fieldInfos.size(); i++) {
+	FieldInfo fi = fieldInfos.fieldInfo(i);
+	if (fi.isIndexed)
+	  files.addElement(segment + ".f" + i);
+      }
     }
     return files;
   }
@@ -141,11 +292,23 @@ public final class SegmentReader extends IndexReader {
     return tis.terms(t);
   }
 
-  public final synchronized Document document(int n) throws IOException {
+  public final Document document(int n) throws IOException {
+    if (isDeleted(n))
+      throw new IllegalArgumentException
+	("attempt to access a deleted document");
+    synchronized (fieldsReader) {		  // shared with other readers
+      return fieldsReader.doc(n);
+    }
+  }
+
+  public final Document document(int n, FieldSelector selector)
+       throws IOException {
     if (isDeleted(n))
       throw new IllegalArgumentException
 	("attempt to access a deleted document");
-    return fieldsReader.doc(n);
+    synchronized (fieldsReader) {		  // shared with other readers
+      return fieldsReader.doc(n, selector);
+    }
   }
 
   public final synchronized boolean isDeleted(int n) {
@@ -155,7 +318,7 @@ public final class SegmentReader extends IndexReader {
   public final TermDocs termDocs(Term t) throws IOException {
     TermInfo ti = tis.get(t);
     if (ti != null)
-      return new SegmentTermDocs(this, ti);
+      return new SegmentTermDocs(this, t, ti);
     else
       return null;
   }
@@ -167,7 +330,7 @@ public final class SegmentReader extends IndexReader {
   public final TermPositions termPositions(Term t) throws IOException {
     TermInfo ti = tis.get(t);
     if (ti != null)
-      return new SegmentTermPositions(this, ti);
+      return new SegmentTermPositions(this, t, ti);
     else
       return null;
   }
@@ -207,10 +370,32 @@ public final class SegmentReader extends IndexReader {
     return norm.bytes;
   }
 
+  public final NumericDocValues getNumericDocValues(String field)
+       throws IOException {
+    return docValues != null ? docValues.numeric(field) : null;
+  }
+
+  public final SortedDocValues getSortedDocValues(String field)
+       throws IOException {
+    return docValues != null ? docValues.sorted(field) : null;
+  }
+
+  /** True iff norms are kept for the named field. */
+  final boolean hasNorms(String field) {
+    return norms.containsKey(field);
+  }
+
   final void norms(String field, byte[] bytes, int offset) throws IOException {
     InputStream normStream = normStream(field);
-    if (normStream == null)
-      return;					  // use zeros in array
+    if (normStream == null) {
+      FieldInfo fi = fieldInfos.fieldInfo(field);
+      if (fi != null && fi.isIndexed && fi.omitNorms) {
+	byte norm = Similarity.norm(1);		  // as if one term long
+	for (int i = 0; i < maxDoc(); i++)
+	  bytes[offset + i] = norm;
+      }
+      return;					  // else use zeros in array
+    }
     try {
       normStream.readBytes(bytes, offset, maxDoc());
     } finally {
@@ -223,21 +408,41 @@ public final class SegmentReader extends IndexReader {
     if (norm == null)
       return null;
     InputStream result = (InputStream)norm.in.clone();
-    result.seek(0);
+    result.seek(norm.offset);
     return result;
   }
 
-  private final void openNorms() throws IOException {
-    for (int i = 0; i < fieldInfos.size(); i++) {
-      FieldInfo fi = fieldInfos.fieldInfo(i);
-      if (fi.isIndexed) 
-	norms.put(fi.name,
-		  new Norm(directory.openFile(segment + ".f" + fi.number)));
+  private final void openNorms(Directory cfsDir) throws IOException {
+    if (cfsDir.fileExists(segment + ".nrm")) {	  // single norms file
+      normsStream = cfsDir.openFile(segment + ".nrm");
+      for (int i = 0; i < NORMS_HEADER.length; i++)
+	if (normsStream.readByte() != NORMS_HEADER[i])
+	  throw new IOException("bad norms header in " + segment);
+      long offset = NORMS_HEADER.length;
+      int maxDoc = maxDoc();
+      for (int i = 0; i < fieldInfos.size(); i++) {
+	FieldInfo fi = fieldInfos.fieldInfo(i);
+	if (fi.isIndexed && !fi.omitNorms) {
+	  norms.put(fi.name, new Norm(normsStream, offset));
+	  offset += maxDoc;
+	}
+      }
+    } else {					  // one file per field
+      for (int i = 0; i < fieldInfos.size(); i++) {
+	FieldInfo fi = fieldInfos.fieldInfo(i);
+	if (fi.isIndexed) 
+	  norms.put(fi.name,
+		    new Norm(cfsDir.openFile(segment + ".f" + fi.number), 0));
+      }
     }
   }
 
   private final void closeNorms() throws IOException {
     synchronized (norms) {
+      if (normsStream != null) {
+	normsStream.close();			  // shared by all norms
+	return;
+      }
       Enumeration element  = norms.elements();
       while (element.hasMoreElements()) {
 	Norm norm = (Norm)element.nextElement();
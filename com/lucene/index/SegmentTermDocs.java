@@ -21,14 +21,16 @@ package com.lucene.index;
 import java.io.IOException;
 import com.lucene.util.BitVector;
 import com.lucene.store.InputStream;
+import com.lucene.document.Field;
 
 class SegmentTermDocs implements TermDocs {
   protected SegmentReader parent;
-  private InputStream freqStream;
+  InputStream freqStream;
   private int freqCount;
   private BitVector deletedDocs;
   int doc = 0;
   int freq;
+  int indexOptions;				  // of the current term's field
 
   SegmentTermDocs(SegmentReader p) throws IOException {
     parent = p;
@@ -36,12 +38,14 @@ class SegmentTermDocs implements TermDocs {
     deletedDocs = parent.deletedDocs;
   }
 
-  SegmentTermDocs(SegmentReader p, TermInfo ti) throws IOException {
+  SegmentTermDocs(SegmentReader p, Term t, TermInfo ti) throws IOException {
     this(p);
-    seek(ti);
+    seek(ti, t);
   }
   
-  void seek(TermInfo ti) throws IOException {
+  void seek(TermInfo ti, Term t) throws IOException {
+    FieldInfo fi = parent.fieldInfos.fieldInfo(t.field);
+    indexOptions = fi.indexOptions;
     freqCount = ti.docFreq;
     doc = 0;
     freqStream.seek(ti.freqPointer);
@@ -63,11 +67,16 @@ class SegmentTermDocs implements TermDocs {
 	return false;
 
       int docCode = freqStream.readVInt();
-      doc += docCode >>> 1;			  // shift off low bit
-      if ((docCode & 1) != 0)			  // if low bit is set
-	freq = 1;				  // freq is one
-      else
-	freq = freqStream.readVInt();		  // else read freq
+      if (indexOptions == Field.DOCS_ONLY) {
+	doc += docCode;				  // no freq
+	freq = 1;
+      } else {
+	doc += docCode >>> 1;			  // shift off low bit
+	if ((docCode & 1) != 0)			  // if low bit is set
+	  freq = 1;				  // freq is one
+	else
+	  freq = freqStream.readVInt();		  // else read freq
+      }
  
       freqCount--;
     
@@ -82,16 +91,22 @@ class SegmentTermDocs implements TermDocs {
   public int read(final int[] docs, final int[] freqs)
       throws IOException {
     final int end = docs.length;
+    final boolean docsOnly = indexOptions == Field.DOCS_ONLY;
     int i = 0;
     while (i < end && freqCount > 0) {
 
       // manually inlined call to next() for speed
       final int docCode = freqStream.readVInt();
-      doc += docCode >>> 1;			  // shift off low bit
-      if ((docCode & 1) != 0)			  // if low bit is set
-	freq = 1;				  // freq is one
-      else
-	freq = freqStream.readVInt();		  // else read freq
+      if (docsOnly) {
+	doc += docCode;				  // no freq
+	freq = 1;
+      } else {
+	doc += docCode >>> 1;			  // shift off low bit
+	if ((docCode & 1) != 0)			  // if low bit is set
+	  freq = 1;				  // freq is one
+	else
+	  freq = freqStream.readVInt();		  // else read freq
+      }
       freqCount--;
    
       if (deletedDocs == null || !deletedDocs.get(doc)) {
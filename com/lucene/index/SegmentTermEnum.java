@@ -51,7 +51,8 @@ final public class SegmentTermEnum extends TermEnum implements Cloneable {
 
     clone.input = (InputStream)input.clone();
     clone.termInfo = new TermInfo(termInfo);
-    clone.growBuffer(term.text.length());
+    if (term != null)				  // else past the last term
+      clone.growBuffer(term.text.length());
 
     return clone;
   }
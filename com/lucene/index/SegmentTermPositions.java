@@ -21,27 +21,31 @@ package com.lucene.index;
 import java.io.IOException;
 
 import com.lucene.store.InputStream;
+import com.lucene.document.Field;
 
 final class SegmentTermPositions
 extends SegmentTermDocs implements TermPositions {
-  private InputStream proxStream;
+  InputStream proxStream;
   private int proxCount;
   private int position;
+  private String field;				  // of the current term
   
   SegmentTermPositions(SegmentReader p) throws IOException {
     super(p);
     proxStream = parent.getProxStream();
   }
 
-  SegmentTermPositions(SegmentReader p, TermInfo ti)
+  SegmentTermPositions(SegmentReader p, Term t, TermInfo ti)
        throws IOException {
     this(p);
-    seek(ti);
+    seek(ti, t);
   }
 
-  final void seek(TermInfo ti) throws IOException {
-    super.seek(ti);
+  final void seek(TermInfo ti, Term t) throws IOException {
+    super.seek(ti, t);
+    field = t.field;
     proxStream.seek(ti.proxPointer);
+    proxCount = 0;
   }
 
   public final void close() throws IOException {
@@ -49,12 +53,20 @@ extends SegmentTermDocs implements TermPositions {
     proxStream.close();
   }
 
+  /** Throws IllegalStateException for fields which omit positions, so that,
+    e.g., a phrase query on such a field fails rather than matching
+    nothing. */
   public final int nextPosition() throws IOException {
+    if (indexOptions != Field.DOCS_AND_FREQS_AND_POSITIONS)
+      throw new IllegalStateException
+	("positions were not indexed for field \"" + field + "\"");
     proxCount--;
     return position += proxStream.readVInt();
   }
 
   protected final void skippingDoc() throws IOException {
+    if (indexOptions != Field.DOCS_AND_FREQS_AND_POSITIONS)
+      return;					  // no positions
     for (int f = freq; f > 0; f--)		  // skip all positions
       proxStream.readVInt();
   }
@@ -64,7 +76,8 @@ extends SegmentTermDocs implements TermPositions {
       proxStream.readVInt();
 
     if (super.next()) {				  // run super
-      proxCount = freq;				  // note frequency
+      if (indexOptions == Field.DOCS_AND_FREQS_AND_POSITIONS)
+	proxCount = freq;			  // note frequency
       position = 0;				  // reset position
       return true;
     }
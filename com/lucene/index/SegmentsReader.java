@@ -23,15 +23,21 @@ import java.util.Hashtable;
 
 import com.lucene.store.Directory;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 
 final class SegmentsReader extends IndexReader {
   protected SegmentReader[] readers;
   protected int[] starts;			  // 1st docno for each segment
   private Hashtable normsCache = new Hashtable();
+  private Hashtable docValuesCache = new Hashtable();
   private int maxDoc = 0;
   private int numDocs = -1;
 
-  SegmentsReader(SegmentReader[] r) throws IOException {
+  private Directory directory;
+  IndexWriter writer = null;			  // if opened by a writer
+
+  SegmentsReader(Directory d, SegmentReader[] r) throws IOException {
+    directory = d;
     readers = r;
     starts = new int[readers.length + 1];	  // build starts array
     for (int i = 0; i < readers.length; i++) {
@@ -60,18 +66,27 @@ final class SegmentsReader extends IndexReader {
     return readers[i].document(n - starts[i]);	  // dispatch to segment reader
   }
 
+  public final Document document(int n, FieldSelector selector)
+       throws IOException {
+    int i = readerIndex(n);			  // find segment num
+    return readers[i].document(n - starts[i], selector); // dispatch
+  }
+
   public final boolean isDeleted(int n) {
     int i = readerIndex(n);			  // find segment num
     return readers[i].isDeleted(n - starts[i]);	  // dispatch to segment reader
   }
 
   public final void delete(int n) throws IOException {
+    if (writer != null)				  // would never be committed
+      throw new UnsupportedOperationException
+	("delete through IndexWriter.deleteDocuments, not its reader");
     numDocs = -1;				  // invalidate cache
     int i = readerIndex(n);			  // find segment num
     readers[i].delete(n - starts[i]);		  // dispatch to segment reader
   }
 
-  private final int readerIndex(int n) {	  // find reader for doc n:
+  final int readerIndex(int n) {		  // find reader for doc n:
     int lo = 0;					  // search starts array
     int hi = readers.length - 1;		  // for first element less
 						  // than n, return its index
@@ -82,8 +97,11 @@ final class SegmentsReader extends IndexReader {
 	hi = mid - 1;
       else if (n > midValue)
 	lo = mid + 1;
-      else
+      else {					  // found a match
+	while (mid+1 < readers.length && starts[mid+1] == midValue)
+	  mid++;				  // skip empty segments
 	return mid;
+      }
     }
     return hi;
   }
@@ -93,6 +111,12 @@ final class SegmentsReader extends IndexReader {
     if (bytes != null)
       return bytes;				  // cache hit
 
+    boolean found = false;			  // any norms kept?
+    for (int i = 0; i < readers.length; i++)
+      found |= readers[i].hasNorms(field);
+    if (!found)
+      return null;
+
     bytes = new byte[maxDoc()];
     for (int i = 0; i < readers.length; i++)
       readers[i].norms(field, bytes, starts[i]);
@@ -100,6 +124,44 @@ final class SegmentsReader extends IndexReader {
     return bytes;
   }
 
+  public final synchronized NumericDocValues getNumericDocValues(String field)
+       throws IOException {
+    Object values = docValuesCache.get(field);
+    if (values instanceof NumericDocValues)
+      return (NumericDocValues)values;		  // cache hit
+
+    NumericDocValues[] subs = new NumericDocValues[readers.length];
+    boolean found = false;
+    for (int i = 0; i < readers.length; i++) {
+      subs[i] = readers[i].getNumericDocValues(field);
+      found |= subs[i] != null;
+    }
+    if (!found)
+      return null;
+    NumericDocValues result = new SegmentsNumericDocValues(this, subs);
+    docValuesCache.put(field, result);		  // update cache
+    return result;
+  }
+
+  public final synchronized SortedDocValues getSortedDocValues(String field)
+       throws IOException {
+    Object values = docValuesCache.get(field);
+    if (values instanceof SortedDocValues)
+      return (SortedDocValues)values;		  // cache hit
+
+    SortedDocValues[] subs = new SortedDocValues[readers.length];
+    boolean found = false;
+    for (int i = 0; i < readers.length; i++) {
+      subs[i] = readers[i].getSortedDocValues(field);
+      found |= subs[i] != null;
+    }
+    if (!found)
+      return null;
+    SortedDocValues result = new SegmentsSortedDocValues(this, subs);
+    docValuesCache.put(field, result);		  // update cache
+    return result;
+  }
+
   public final TermEnum terms() throws IOException {
     return new SegmentsTermEnum(readers, starts, null);
   }
@@ -123,9 +185,20 @@ final class SegmentsReader extends IndexReader {
     return new SegmentsTermPositions(readers, starts, term);
   }
 
+  public final IndexReader reopen() throws IOException {
+    if (writer != null)
+      return writer.getReader(this, readers);
+    return IndexReader.reopen(this, directory, readers);
+  }
+
   public final void close() throws IOException {
+    boolean changed = false;
+    for (int i = 0; i < readers.length; i++)
+      changed |= readers[i].deletedDocsDirty;
+    if (changed && segmentInfos != null)
+      commitDeletions(directory, segmentInfos, readers, deletionPolicy);
     for (int i = 0; i < readers.length; i++)
-      readers[i].close();
+      readers[i].close(false);
   }
 }
 
@@ -291,3 +364,53 @@ class SegmentsTermPositions extends SegmentsTermDocs implements TermPositions {
     return ((SegmentTermPositions)current).nextPosition();
   }
 }
+
+final class SegmentsNumericDocValues extends NumericDocValues {
+  private SegmentsReader reader;
+  private NumericDocValues[] subs;		  // null if segment has none
+
+  SegmentsNumericDocValues(SegmentsReader reader, NumericDocValues[] subs) {
+    this.reader = reader;
+    this.subs = subs;
+  }
+
+  public final long get(int doc) throws IOException {
+    int i = reader.readerIndex(doc);		  // find segment num
+    NumericDocValues sub = subs[i];
+    return sub != null ? sub.get(doc - reader.starts[i]) : 0L;
+  }
+}
+
+/** Maps the ordinals of each segment to ordinals over the merged values of
+  all segments, so that documents in different segments may be compared. */
+final class SegmentsSortedDocValues extends SortedDocValues {
+  private SegmentsReader reader;
+  private SortedDocValues[] subs;		  // null if segment has none
+  private int[][] ordMaps;			  // segment ord to global ord
+  private String[] values;			  // merged values
+
+  SegmentsSortedDocValues(SegmentsReader reader, SortedDocValues[] subs)
+       throws IOException {
+    this.reader = reader;
+    this.subs = subs;
+    ordMaps = new int[subs.length][];
+    values = DocValuesWriter.mergeValues(subs, ordMaps);
+  }
+
+  public final int getOrd(int doc) throws IOException {
+    int i = reader.readerIndex(doc);		  // find segment num
+    SortedDocValues sub = subs[i];
+    if (sub == null)
+      return -1;
+    int ord = sub.getOrd(doc - reader.starts[i]);
+    return ord == -1 ? -1 : ordMaps[i][ord];
+  }
+
+  public final String lookup(int ord) {
+    return values[ord];
+  }
+
+  public final int getValueCount() {
+    return values.length;
+  }
+}
@@ -0,0 +1,131 @@
+/* SnapshotDeletionPolicy.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+import java.util.Vector;
+import java.util.Hashtable;
+
+import com.lucene.store.Directory;
+
+/** Keeps the commits which have been snapshotted, and otherwise defers to
+  another policy.  This permits a hot backup to be taken while documents are
+  added:<pre>
+    SnapshotDeletionPolicy snapshots =
+      new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+    IndexWriter writer = new IndexWriter(directory, analyzer, false, snapshots);
+    ...
+    IndexCommit commit = snapshots.snapshot();
+    try {
+      // copy each of commit.getFileNames()
+    } finally {
+      snapshots.release(commit);
+    }
+  </pre> */
+public final class SnapshotDeletionPolicy extends IndexDeletionPolicy {
+  private IndexDeletionPolicy primary;
+  private IndexCommit lastCommit = null;
+  private Hashtable snapshots = new Hashtable();  // name -> int[] count
+
+  /** Constructs a policy which keeps snapshots and otherwise defers to
+    <code>primary</code>. */
+  public SnapshotDeletionPolicy(IndexDeletionPolicy primary) {
+    this.primary = primary;
+  }
+
+  public final synchronized void onInit(Vector commits) throws IOException {
+    primary.onInit(wrap(commits));
+  }
+
+  public final synchronized void onCommit(Vector commits) throws IOException {
+    primary.onCommit(wrap(commits));
+  }
+
+  /** Returns the latest commit, which is not deleted until it is passed to
+    {@link #release(IndexCommit)}.  A commit may be snapshotted more than
+    once; it is then kept until each snapshot is released. */
+  public final synchronized IndexCommit snapshot() {
+    if (lastCommit == null)
+      throw new IllegalStateException("no commit has been made");
+    String name = lastCommit.getSegmentsFileName();
+    int[] count = (int[])snapshots.get(name);
+    if (count == null) {
+      count = new int[1];
+      snapshots.put(name, count);
+    }
+    count[0]++;
+    return lastCommit;
+  }
+
+  /** Releases a snapshot.  The commit may then be deleted by the next
+    commit. */
+  public final synchronized void release(IndexCommit commit) {
+    String name = commit.getSegmentsFileName();
+    int[] count = (int[])snapshots.get(name);
+    if (count == null)
+      throw new IllegalArgumentException(name + " is not snapshotted");
+    if (--count[0] == 0)
+      snapshots.remove(name);
+  }
+
+  private final Vector wrap(Vector commits) {
+    Vector wrapped = new Vector(commits.size());
+    for (int i = 0; i < commits.size(); i++)
+      wrapped.addElement(new SnapshotCommit((IndexCommit)commits.elementAt(i)));
+    if (commits.size() > 0)
+      lastCommit = (IndexCommit)commits.lastElement();
+    return wrapped;
+  }
+
+  /** Ignores deletion while snapshotted. */
+  private final class SnapshotCommit extends IndexCommit {
+    private IndexCommit commit;
+
+    SnapshotCommit(IndexCommit commit) {
+      this.commit = commit;
+    }
+
+    public final String getSegmentsFileName() {
+      return commit.getSegmentsFileName();
+    }
+
+    public final Vector getFileNames() {
+      return commit.getFileNames();
+    }
+
+    public final Directory getDirectory() {
+      return commit.getDirectory();
+    }
+
+    public final long getGeneration() {
+      return commit.getGeneration();
+    }
+
+    public final void delete() {
+      synchronized (SnapshotDeletionPolicy.this) {
+	if (!snapshots.containsKey(getSegmentsFileName()))
+	  commit.delete();
+      }
+    }
+
+    public final boolean isDeleted() {
+      return commit.isDeleted();
+    }
+  }
+}
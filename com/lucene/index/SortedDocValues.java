@@ -0,0 +1,48 @@
+/* SortedDocValues.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.index;
+
+import java.io.IOException;
+
+/** Abstract class for accessing the sorted String doc values of a field.
+
+  <p>The distinct values of the field are numbered in sorted order, so that
+  documents may be compared by the ordinal of their value alone.  Ordinals
+  are read from a column-wise file written at index time, so that the
+  ordinal for any document may be retrieved in constant time.
+  @see com.lucene.document.Field#SortedDocValue */
+
+public abstract class SortedDocValues {
+  /** Returns the ordinal of the value of document number <code>doc</code>,
+    or -1 if the document has no value. */
+  abstract public int getOrd(int doc) throws IOException;
+
+  /** Returns the value with ordinal <code>ord</code>. */
+  abstract public String lookup(int ord) throws IOException;
+
+  /** Returns the number of distinct values. */
+  abstract public int getValueCount();
+
+  /** Returns the value of document number <code>doc</code>, or null if the
+    document has no value. */
+  public String get(int doc) throws IOException {
+    int ord = getOrd(doc);
+    return ord == -1 ? null : lookup(ord);
+  }
+}
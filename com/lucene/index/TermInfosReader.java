@@ -163,7 +163,7 @@ final public class TermInfosReader {
 
     while(term.compareTo(termEnum.term()) > 0 && termEnum.next()) {}
 
-    if (term.compareTo(termEnum.term()) == 0)
+    if (termEnum.term() != null && term.compareTo(termEnum.term()) == 0)
       return termEnum.position;
     else
       return -1;
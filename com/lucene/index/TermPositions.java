@@ -34,6 +34,8 @@ public interface TermPositions extends TermDocs {
     this more than {@link #freq()} times
     without calling {@link #next()}<p> This is
     invalid until {@link #next()} is called for
-    the first time.*/
+    the first time.  An IllegalStateException is thrown if positions were
+    not indexed for the term's field.
+    @see com.lucene.document.Field#indexOptions() */
   public int nextPosition() throws IOException;
 }  
@@ -8,13 +8,8 @@ ifeq ($(JAVALINK),)
   JAVALINK = http://java.sun.com/products/jdk/1.3/docs/api/
 endif
 
-# OLDJAVA does not have a -link option
-ifeq ($(OLDJAVA),)
-  JLINK_OPT = -link $(JAVALINK)
-  JAR_CMD = $(JAR) -cvfm lucene.jar com/lucene/manifest
-else
-  JAR_CMD = $(JAR) -cvf lucene.jar
-endif
+JLINK_OPT = -link $(JAVALINK)
+JAR_CMD = $(JAR) -cvfm lucene.jar com/lucene/manifest
 
 .PHONY: jar doc demo release
 
@@ -78,11 +78,7 @@ endif
 
 # CLASSPATH
 # By default include the Lucene root, and Java's builtin classes
-ifeq ($(OLDJAVA),)
-  export CLASSPATH=$(PREPENDCLASSPATH)$(COLON)$(ROOT)$(COLON)$(JDK_HOME)$(SLASH)jre$(SLASH)lib$(SLASH)rt.jar
-else
-  export CLASSPATH=$(PREPENDCLASSPATH)$(COLON)$(ROOT)$(COLON)$(JDK_HOME)$(SLASH)lib$(SLASH)classes.zip
-endif
+export CLASSPATH=$(PREPENDCLASSPATH)$(COLON)$(ROOT)$(COLON)$(JDK_HOME)$(SLASH)jre$(SLASH)lib$(SLASH)rt.jar
 
 # JIKESPATH overrides the classpath variable for jikes, so we need to set it
 # here to avoid problems with a jikes user
@@ -114,8 +110,8 @@ endif
 .PRECIOUS: $(patsubst %.jj,%.java, $(JJFILES))
 
 
-# Assume all .java files should have a .class file.
-CLASSES += $(patsubst %.java,%.class,$(wildcard *.java))
+# Assume all .java files, except those in EXCLUDES, should have a .class file.
+CLASSES += $(patsubst %.java,%.class,$(filter-out $(EXCLUDES),$(wildcard *.java)))
 
 # default rule
 classes : $(CLASSES)
@@ -31,7 +31,9 @@ import com.lucene.index.IndexReader;
 /** A Filter that restricts search results to a range of time.
 
    <p>For this to work, documents must have been indexed with a {@link
-   DateField}.  */
+   DateField}.  Times indexed as numeric fields may instead be filtered
+   with {@link NumericRangeFilter#LongRange(String,long,long)}, which visits
+   far fewer terms for wide ranges.  */
 
 public final class DateFilter extends Filter {
   String field;
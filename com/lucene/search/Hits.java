@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Vector;
 import java.util.BitSet;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 import com.lucene.index.IndexReader;
 
 /** A ranked list of documents, used to hold search results. */
@@ -92,6 +93,15 @@ public final class Hits {
     return hitDoc.doc;
   }
 
+  /** Returns those stored fields of the nth document in this set which are
+    accepted by <code>selector</code>.
+    <p>Documents read this way are not cached.
+    @see com.lucene.index.IndexReader#document(int,FieldSelector) */
+  public final Document doc(int n, FieldSelector selector)
+       throws IOException {
+    return searcher.doc(hitDoc(n).id, selector);
+  }
+
   /** Returns the score for the nth document in this set. */ 
   public final float score(int n) throws IOException {
     return hitDoc(n).score;
@@ -23,6 +23,7 @@ import java.util.BitSet;
 
 import com.lucene.store.Directory;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 import com.lucene.index.IndexReader;
 import com.lucene.index.Term;
 import com.lucene.util.PriorityQueue;
@@ -59,6 +60,10 @@ public final class IndexSearcher extends Searcher {
     return reader.document(i);
   }
 
+  final Document doc(int i, FieldSelector selector) throws IOException {
+    return reader.document(i, selector);
+  }
+
   final int maxDoc() throws IOException {
     return reader.maxDoc();
   }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Vector;
 
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 import com.lucene.index.Term;
 import com.lucene.util.PriorityQueue;
 
@@ -61,6 +62,11 @@ public final class MultiSearcher extends Searcher {
     return searchers[i].doc(n - starts[i]);	  // dispatch to searcher
   }
 
+  final Document doc(int n, FieldSelector selector) throws IOException {
+    int i = searcherIndex(n);			  // find searcher index
+    return searchers[i].doc(n - starts[i], selector); // dispatch to searcher
+  }
+
   // replace w/ call to Arrays.binarySearch in Java 1.2
   private final int searcherIndex(int n) {	  // find searcher for doc n:
     int lo = 0;					  // search starts array
@@ -0,0 +1,161 @@
+/* NumericRangeFilter.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.search;
+
+import java.util.BitSet;
+import java.io.IOException;
+
+import com.lucene.document.NumericField;
+import com.lucene.index.Term;
+import com.lucene.index.TermDocs;
+import com.lucene.index.TermEnum;
+import com.lucene.index.IndexReader;
+
+/** A Filter that restricts search results to a range of numeric values.
+
+   <p>For this to work, documents must have been indexed with a numeric
+   {@link com.lucene.document.Field}, e.g., one constructed with {@link
+   com.lucene.document.Field#Keyword(String,long)}.  The range is converted
+   into a small number of term ranges over the trie-coded terms of the
+   field, so that the number of terms enumerated is bounded by the precision
+   step rather than by the number of distinct values in the range.  Both
+   bounds are inclusive. */
+
+public final class NumericRangeFilter extends Filter {
+  String field;
+  String[] ranges;				  // pairs of lower, upper terms
+  private Number min;
+  private Number max;
+
+  private NumericRangeFilter(String field, String[] ranges,
+			     Number min, Number max) {
+    this.field = field.intern();
+    this.ranges = ranges;
+    this.min = min;
+    this.max = max;
+  }
+
+  /** Constructs a filter for field <code>field</code> matching long values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter LongRange(String field,
+					     long min, long max) {
+    return LongRange(field, min, max, NumericField.PRECISION_STEP);
+  }
+  /** Constructs a filter for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching long values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter LongRange(String field, long min, long max,
+					     int precisionStep) {
+    return new NumericRangeFilter
+      (field, NumericField.splitLongRange(min, max, precisionStep),
+       Long.valueOf(min), Long.valueOf(max));
+  }
+
+  /** Constructs a filter for field <code>field</code> matching int values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter IntRange(String field, int min, int max) {
+    return IntRange(field, min, max, NumericField.PRECISION_STEP);
+  }
+  /** Constructs a filter for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching int values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter IntRange(String field, int min, int max,
+					    int precisionStep) {
+    return new NumericRangeFilter
+      (field, NumericField.splitIntRange(min, max, precisionStep),
+       Integer.valueOf(min), Integer.valueOf(max));
+  }
+
+  /** Constructs a filter for field <code>field</code> matching float values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter FloatRange(String field,
+					      float min, float max) {
+    return FloatRange(field, min, max, NumericField.PRECISION_STEP);
+  }
+  /** Constructs a filter for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching float values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter FloatRange(String field,
+					      float min, float max,
+					      int precisionStep) {
+    return new NumericRangeFilter
+      (field, NumericField.splitIntRange(NumericField.floatToSortableInt(min),
+					 NumericField.floatToSortableInt(max),
+					 precisionStep),
+       Float.valueOf(min), Float.valueOf(max));
+  }
+
+  /** Constructs a filter for field <code>field</code> matching double values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter DoubleRange(String field,
+					       double min, double max) {
+    return DoubleRange(field, min, max, NumericField.PRECISION_STEP);
+  }
+  /** Constructs a filter for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching double values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeFilter DoubleRange(String field,
+					       double min, double max,
+					       int precisionStep) {
+    return new NumericRangeFilter
+      (field,
+       NumericField.splitLongRange(NumericField.doubleToSortableLong(min),
+				   NumericField.doubleToSortableLong(max),
+				   precisionStep),
+       Double.valueOf(min), Double.valueOf(max));
+  }
+
+  /** Returns a BitSet with true for documents which should be permitted in
+    search results, and false for those that should not. */
+  final public BitSet bits(IndexReader reader) throws IOException {
+    BitSet bits = new BitSet(reader.maxDoc());
+    for (int i = 0; i < ranges.length; i += 2) {
+      TermEnum termEnum = reader.terms(new Term(field, ranges[i]));
+      try {
+	String upper = ranges[i+1];
+	do {
+	  Term term = termEnum.term();
+	  if (term == null || term.field() != field ||
+	      term.text().compareTo(upper) > 0)
+	    break;
+	  TermDocs termDocs = reader.termDocs(term);
+	  try {
+	    while (termDocs.next())
+	      bits.set(termDocs.doc());
+	  } finally {
+	    termDocs.close();
+	  }
+	} while (termEnum.next());
+      } finally {
+	termEnum.close();
+      }
+    }
+    return bits;
+  }
+
+  public final String toString() {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append(field);
+    buffer.append(":");
+    buffer.append(min.toString());
+    buffer.append("-");
+    buffer.append(max.toString());
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,179 @@
+/* NumericRangeQuery.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.search;
+
+import java.io.IOException;
+import com.lucene.index.Term;
+import com.lucene.index.TermEnum;
+import com.lucene.index.IndexReader;
+
+/** A Query that matches documents with a numeric value within a range.
+
+  <p>The range is converted into a small number of term ranges over the
+  trie-coded terms of the field, then expanded, like {@link RangeQuery},
+  into a {@link BooleanQuery} of {@link TermQuery}s.  When scoring is not
+  required, {@link NumericRangeFilter} is faster.  Both bounds are
+  inclusive. */
+final public class NumericRangeQuery extends Query {
+  private NumericRangeFilter filter;
+  private IndexReader reader;
+  private float boost = 1.0f;
+  private BooleanQuery query;
+
+  private NumericRangeQuery(NumericRangeFilter filter) {
+    this.filter = filter;
+  }
+
+  /** Constructs a query for field <code>field</code> matching long values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery LongRange(String field, long min, long max) {
+    return new NumericRangeQuery(NumericRangeFilter.LongRange(field, min, max));
+  }
+  /** Constructs a query for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching long values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery LongRange(String field, long min, long max,
+					    int precisionStep) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.LongRange(field, min, max, precisionStep));
+  }
+
+  /** Constructs a query for field <code>field</code> matching int values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery IntRange(String field, int min, int max) {
+    return new NumericRangeQuery(NumericRangeFilter.IntRange(field, min, max));
+  }
+  /** Constructs a query for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching int values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery IntRange(String field, int min, int max,
+					   int precisionStep) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.IntRange(field, min, max, precisionStep));
+  }
+
+  /** Constructs a query for field <code>field</code> matching float values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery FloatRange(String field,
+					     float min, float max) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.FloatRange(field, min, max));
+  }
+  /** Constructs a query for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching float values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery FloatRange(String field,
+					     float min, float max,
+					     int precisionStep) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.FloatRange(field, min, max, precisionStep));
+  }
+
+  /** Constructs a query for field <code>field</code> matching double values
+    between <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery DoubleRange(String field,
+					      double min, double max) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.DoubleRange(field, min, max));
+  }
+  /** Constructs a query for field <code>field</code>, indexed with
+    <code>precisionStep</code>, matching double values between
+    <code>min</code> and <code>max</code>. */
+  public static NumericRangeQuery DoubleRange(String field,
+					      double min, double max,
+					      int precisionStep) {
+    return new NumericRangeQuery
+      (NumericRangeFilter.DoubleRange(field, min, max, precisionStep));
+  }
+
+  /** Sets the boost for this term to <code>b</code>.  Documents containing
+    this term will (in addition to the normal weightings) have their score
+    multiplied by <code>boost</code>. */
+  public void setBoost(float boost) {
+    this.boost = boost;
+  }
+
+  /** Returns the boost for this term. */
+  public float getBoost() {
+    return boost;
+  }
+  
+  final void prepare(IndexReader reader) {
+    this.query = null;
+    this.reader = reader;
+  }
+
+  final float sumOfSquaredWeights(Searcher searcher)
+    throws IOException {
+    return getQuery().sumOfSquaredWeights(searcher);
+  }
+
+  void normalize(float norm) {
+    try {
+      getQuery().normalize(norm);
+    } catch (IOException e) {
+      throw new RuntimeException(e.toString());
+    }
+  }
+
+  Scorer scorer(IndexReader reader) throws IOException {
+    return getQuery().scorer(reader);
+  }
+
+  private BooleanQuery getQuery() throws IOException {
+    if (query == null) {
+      BooleanQuery q = new BooleanQuery();
+      String field = filter.field;
+      String[] ranges = filter.ranges;
+      for (int i = 0; i < ranges.length; i += 2) {
+	TermEnum termEnum = reader.terms(new Term(field, ranges[i]));
+	try {
+	  String upper = ranges[i+1];
+	  do {
+	    Term term = termEnum.term();
+	    if (term == null || term.field() != field ||
+		term.text().compareTo(upper) > 0)
+	      break;
+	    TermQuery tq = new TermQuery(term);	  // found a match
+	    tq.setBoost(boost);			  // set the boost
+	    q.add(tq, false, false);		  // add to q
+	  } while (termEnum.next());
+	} finally {
+	  termEnum.close();
+	}
+      }
+      query = q;
+    }
+    return query;
+  }
+
+  /** Prints a user-readable version of this query. */
+  public String toString(String field) {
+    StringBuffer buffer = new StringBuffer();
+    String range = filter.toString();		  // field:min-max
+    if (filter.field.equals(field))
+      range = range.substring(field.length() + 1);
+    buffer.append(range);
+    if (boost != 1.0f) {
+      buffer.append("^");
+      buffer.append(Float.toString(boost));
+    }
+    return buffer.toString();
+  }
+}
@@ -20,6 +20,7 @@ package com.lucene.search;
 
 import java.io.IOException;
 import com.lucene.document.Document;
+import com.lucene.document.FieldSelector;
 import com.lucene.index.Term;
 
 /** The abstract base class for search implementations.
@@ -47,5 +48,6 @@ public abstract class Searcher {
   abstract TopDocs search(Query query, Filter filter, int n)
        throws IOException;
   abstract Document doc(int i) throws IOException;
+  abstract Document doc(int i, FieldSelector selector) throws IOException;
 
 }
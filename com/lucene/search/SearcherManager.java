@@ -0,0 +1,212 @@
+/* SearcherManager.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.search;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Hashtable;
+
+import com.lucene.store.Directory;
+import com.lucene.index.IndexReader;
+import com.lucene.index.IndexWriter;
+
+/** Shares a current {@link IndexSearcher} among threads, and replaces it when
+ * the index changes.
+ *
+ * <P>Each search should acquire the current searcher and release it when
+ * done:<pre>
+ *   IndexSearcher searcher = manager.acquire();
+ *   try {
+ *     Hits hits = searcher.search(query);
+ *     ...
+ *   } finally {
+ *     manager.release(searcher);
+ *   }
+ * </pre>
+ *
+ * <P>A searcher is closed only once it has been replaced and every thread
+ * using it has released it, so searches in progress never see a closed
+ * reader.  New searchers are opened with {@link IndexReader#reopen()}, which
+ * shares unchanged segments, and are warmed by an optional {@link
+ * SearcherWarmer} before any search may acquire them.
+ */
+public final class SearcherManager {
+  private IndexSearcher current;
+  private Hashtable refCounts = new Hashtable();  // maps searcher to int[1]
+  private SearcherWarmer warmer;
+  private Object refreshLock = new Object();	  // one refresh at a time
+  private Thread refreshThread = null;
+  private boolean closed = false;
+
+  /** If non-null, errors in background refreshes will be printed to this. */
+  public PrintStream infoStream = null;
+
+  /** Creates a manager searching the index in the named directory. */
+  public SearcherManager(String path, SearcherWarmer warmer)
+       throws IOException {
+    this(IndexReader.open(path), warmer);
+  }
+
+  /** Creates a manager searching the index in the provided directory. */
+  public SearcherManager(Directory directory, SearcherWarmer warmer)
+       throws IOException {
+    this(IndexReader.open(directory), warmer);
+  }
+
+  /** Creates a manager searching the documents added to
+   * <code>writer</code>, including those not yet committed.
+   * @see IndexWriter#getReader() */
+  public SearcherManager(IndexWriter writer, SearcherWarmer warmer)
+       throws IOException {
+    this(writer.getReader(), warmer);
+  }
+
+  /** Creates a manager searching the provided reader, which it will close.
+   * <code>warmer</code> may be null. */
+  public SearcherManager(IndexReader reader, SearcherWarmer warmer)
+       throws IOException {
+    this.warmer = warmer;
+    IndexSearcher searcher = new IndexSearcher(reader);
+    warm(searcher);
+    current = searcher;
+    refCounts.put(searcher, new int[] { 1 });	  // the manager's reference
+  }
+
+  /** Returns the current searcher.  It must be passed to {@link
+   * #release(IndexSearcher)} when no longer needed, and must not be
+   * closed. */
+  public synchronized IndexSearcher acquire() {
+    if (closed)
+      throw new IllegalStateException("SearcherManager is closed");
+    ((int[])refCounts.get(current))[0]++;
+    return current;
+  }
+
+  /** Releases a searcher returned by {@link #acquire()}. */
+  public synchronized void release(IndexSearcher searcher)
+       throws IOException {
+    int[] refCount = (int[])refCounts.get(searcher);
+    if (refCount == null)
+      throw new IllegalArgumentException("searcher not acquired");
+    if (--refCount[0] == 0) {			  // replaced & unused
+      refCounts.remove(searcher);
+      searcher.close();
+    }
+  }
+
+  /** Replaces the current searcher if the index has changed.  The new
+   * searcher is warmed before it is made current.  Searches are not blocked
+   * meanwhile; they continue to use the old searcher.  Returns true if a new
+   * searcher was made current. */
+  public boolean maybeRefresh() throws IOException {
+    synchronized (refreshLock) {
+      IndexSearcher old;
+      synchronized (this) {
+	if (closed)
+	  return false;
+	old = acquire();
+      }
+      try {
+	IndexReader reader = old.reader.reopen();
+	if (reader == old.reader)
+	  return false;				  // index unchanged
+
+	IndexSearcher searcher = new IndexSearcher(reader);
+	boolean success = false;
+	try {
+	  warm(searcher);
+	  success = true;
+	} finally {
+	  if (!success)
+	    searcher.close();
+	}
+	swap(searcher);
+	return true;
+      } finally {
+	release(old);
+      }
+    }
+  }
+
+  private final void warm(IndexSearcher searcher) throws IOException {
+    if (warmer != null)
+      warmer.warm(searcher);
+  }
+
+  private synchronized void swap(IndexSearcher searcher) throws IOException {
+    IndexSearcher old = current;
+    current = searcher;
+    refCounts.put(searcher, new int[] { 1 });
+    release(old);				  // drop manager's reference
+  }
+
+  /** Starts a daemon thread which calls {@link #maybeRefresh()} every
+   * <code>interval</code> milliseconds, until this manager is closed.  A
+   * refresh which fails leaves the current searcher in place. */
+  public synchronized void startRefreshThread(final long interval) {
+    if (refreshThread != null)
+      throw new IllegalStateException("refresh thread already started");
+    refreshThread = new Thread("SearcherManager refresh") {
+	public void run() {
+	  while (!isClosed()) {
+	    try {
+	      Thread.sleep(interval);
+	    } catch (InterruptedException e) {
+	      break;				  // closed
+	    }
+	    try {
+	      maybeRefresh();
+	    } catch (IOException e) {
+	      if (infoStream != null)
+		infoStream.println("refresh failed: " + e);
+	    }
+	  }
+	}
+      };
+    refreshThread.setDaemon(true);
+    refreshThread.start();
+  }
+
+  private synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /** Stops any refresh thread and releases the current searcher.  Searchers
+   * still acquired are closed when they are released. */
+  public void close() throws IOException {
+    Thread thread;
+    synchronized (this) {
+      if (closed)
+	return;
+      closed = true;
+      thread = refreshThread;
+    }
+    if (thread != null) {
+      thread.interrupt();
+      try {
+	thread.join();
+      } catch (InterruptedException e) {}
+    }
+    synchronized (refreshLock) {		  // wait for any refresh
+      synchronized (this) {
+	release(current);
+      }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/* SearcherWarmer.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.search;
+
+import java.io.IOException;
+
+/** Prepares a newly opened searcher before it is used by a {@link
+ * SearcherManager}.
+ * @see SearcherManager
+ */
+public abstract class SearcherWarmer {
+  /** Called once for every new searcher, before any query uses it.
+   *
+   * <P>Work done here is not repeated by the first queries.  For example, a
+   * warmer might load the norms of the fields which are searched, compute the
+   * bits of commonly used filters and run a few typical queries:<pre>
+   *   new SearcherWarmer() {
+   *       public void warm(IndexSearcher searcher) throws IOException {
+   *         searcher.search(new TermQuery(new Term("contents", "lucene")));
+   *       }
+   *     };
+   * </pre>
+   */
+  public abstract void warm(IndexSearcher searcher) throws IOException;
+}
@@ -62,7 +62,8 @@ final class TermScorer extends Scorer {
 	 ? scoreCache[f]			  // cache hit
 	 : Similarity.tf(f)*weight;		  // cache miss
 
-      score *= Similarity.norm(norms[d]);	  // normalize for field
+      if (norms != null)			  // unless norms omitted
+	score *= Similarity.norm(norms[d]);	  // normalize for field
 
       c.collect(d, score);			  // collect score
 
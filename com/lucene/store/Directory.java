@@ -19,6 +19,7 @@
 package com.lucene.store;
 
 import java.io.IOException;
+import java.util.Hashtable;
 
 /*
   Java's filesystem API is not used directly, but rather through these
@@ -37,6 +38,8 @@ import java.io.IOException;
 */
 
 abstract public class Directory {
+  private final Hashtable locks = new Hashtable(); // held by SingleInstanceLock
+
   /** Returns an array of strings, one for each file in the directory. */
   abstract public String[] list()
        throws IOException, SecurityException;
@@ -72,7 +75,95 @@ abstract public class Directory {
   abstract public InputStream openFile(String name)
        throws IOException, SecurityException;
 
+  /** Creates a new, empty file in the directory with the given name.
+      Returns a stream writing this file <code>bufferSize</code> bytes at a
+      time. */
+  public OutputStream createFile(String name, int bufferSize)
+       throws IOException, SecurityException {
+    OutputStream output = createFile(name);
+    output.setBufferSize(bufferSize);
+    return output;
+  }
+
+  /** Returns a stream reading an existing file <code>bufferSize</code> bytes
+      at a time. */
+  public InputStream openFile(String name, int bufferSize)
+       throws IOException, SecurityException {
+    InputStream input = openFile(name);
+    input.setBufferSize(bufferSize);
+    return input;
+  }
+
+  /** Creates a new, empty file which is written sequentially by a merge.
+      The returned stream need not support seeking.  Implementations may
+      write such files so as not to displace data cached for searching. */
+  public OutputStream createMergeFile(String name)
+       throws IOException, SecurityException {
+    return createFile(name, OutputStream.MERGE_BUFFER_SIZE);
+  }
+
+  /** Returns a stream reading an existing file sequentially for a merge.
+      Implementations may read such files so as not to displace data cached
+      for searching. */
+  public InputStream openMergeFile(String name)
+       throws IOException, SecurityException {
+    return openFile(name, InputStream.MERGE_BUFFER_SIZE);
+  }
+
+  /** Ensures that the named file, and its entry in the directory, are
+      written to stable storage, so that they survive a crash of the machine.
+      The default implementation does nothing, which is appropriate for
+      directories that are not persistent. */
+  public void sync(String name)
+       throws IOException, SecurityException {
+  }
+
+  /** Returns a lock with the given name in this directory.  The default
+      implementation only excludes other users of this Directory instance,
+      which suffices for directories that are not shared between processes. */
+  public Lock makeLock(String name) {
+    return new SingleInstanceLock(locks, name);
+  }
+
   /** Closes the store. */
   abstract public void close()
        throws IOException, SecurityException;
 }
+
+/** A lock held in memory, which only excludes other users of the same
+  Directory instance. */
+final class SingleInstanceLock extends Lock {
+  private Hashtable locks;
+  private String name;
+
+  SingleInstanceLock(Hashtable locks, String name) {
+    this.locks = locks;
+    this.name = name;
+  }
+
+  public final boolean obtain() {
+    synchronized (locks) {
+      if (locks.containsKey(name))
+	return false;
+      locks.put(name, this);
+      return true;
+    }
+  }
+
+  public final void release() {
+    synchronized (locks) {
+      if (locks.get(name) == this)
+	locks.remove(name);
+    }
+  }
+
+  public final boolean isLocked() {
+    synchronized (locks) {
+      return locks.containsKey(name);
+    }
+  }
+
+  public final String toString() {
+    return "SingleInstanceLock: " + name;
+  }
+}
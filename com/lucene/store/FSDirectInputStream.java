@@ -0,0 +1,87 @@
+/* FSDirectInputStream.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.store;
+
+import java.io.IOException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/** Reads a file with direct i/o, bypassing the page cache.  Reads are made
+ * into an aligned buffer in whole, aligned blocks. */
+final class FSDirectInputStream extends InputStream {
+  private FileChannel channel;
+  private boolean isClone;
+
+  private ByteBuffer window = FSDirectOutputStream.allocate();
+  private long windowStart = 0;			  // file position of window
+  private int windowLength = 0;			  // valid bytes in window
+
+  public FSDirectInputStream(File path) throws IOException {
+    super(MERGE_BUFFER_SIZE);
+    channel = FileChannel.open(path.toPath(), new OpenOption[] {
+      StandardOpenOption.READ, FSDirectOutputStream.DIRECT });
+    length = channel.size();
+  }
+
+  /** InputStream methods */
+  protected final void readInternal(byte[] b, int offset, int len)
+       throws IOException {
+    long position = getFilePointer();
+    while (len > 0) {
+      if (position < windowStart || position >= windowStart + windowLength)
+	fill(position);
+      int start = (int)(position - windowStart);
+      int count = Math.min(len, windowLength - start);
+      window.position(start);
+      window.get(b, offset, count);
+      position += count;
+      offset += count;
+      len -= count;
+    }
+  }
+
+  private final void fill(long position) throws IOException {
+    windowStart = position & ~(FSDirectOutputStream.ALIGNMENT - 1);
+    window.clear();
+    int count = channel.read(window, windowStart);
+    windowLength = count < 0 ? 0 : count;
+    if (position >= windowStart + windowLength)
+      throw new IOException("read past EOF");
+  }
+
+  public final void close() throws IOException {
+    if (!isClone)
+      channel.close();
+  }
+
+  /** Random-access methods */
+  protected final void seekInternal(long position) throws IOException {
+  }
+
+  public Object clone() {
+    FSDirectInputStream clone = (FSDirectInputStream)super.clone();
+    clone.isClone = true;
+    clone.window = FSDirectOutputStream.allocate();
+    clone.windowLength = 0;
+    return clone;
+  }
+}
@@ -0,0 +1,113 @@
+/* FSDirectOutputStream.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.store;
+
+import java.io.IOException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+
+/** Writes a file with direct i/o, bypassing the page cache.  Data is
+ * collected in an aligned buffer and written in whole, aligned blocks.  The
+ * final block is padded, and the file is then truncated to its true length.
+ * Seeking is not supported. */
+final class FSDirectOutputStream extends OutputStream {
+  /** The direct i/o open option, or null if this platform has none.  It is
+   * not part of the standard API, so it is looked up reflectively. */
+  static final OpenOption DIRECT = directOption();
+
+  static final int ALIGNMENT = 4096;		  // file system block size
+  static final int BUFFER_SIZE = 64 * ALIGNMENT;
+
+  private static OpenOption directOption() {
+    try {
+      Class c = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+      return (OpenOption)c.getField("DIRECT").get(null);
+    } catch (Throwable e) {
+      return null;
+    }
+  }
+
+  /** Allocates a buffer whose address is aligned to a block. */
+  static final ByteBuffer allocate() {
+    ByteBuffer buffer =
+      ByteBuffer.allocateDirect(BUFFER_SIZE + ALIGNMENT).alignedSlice(ALIGNMENT);
+    buffer.limit(BUFFER_SIZE);
+    return buffer.slice();
+  }
+
+  private FileChannel channel;
+  private ByteBuffer buffer = allocate();
+  private long position = 0;			  // file position of buffer
+  private long length = 0;			  // bytes written
+
+  public FSDirectOutputStream(File path) throws IOException {
+    super(MERGE_BUFFER_SIZE);
+    channel = FileChannel.open(path.toPath(), new OpenOption[] {
+      StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, DIRECT });
+  }
+
+  /** output methods: */
+  public final void flushBuffer(byte[] b, int size) throws IOException {
+    flushBuffer(b, 0, size);
+  }
+  protected final void flushBuffer(byte[] b, int offset, int size)
+       throws IOException {
+    while (size > 0) {
+      int count = Math.min(size, buffer.remaining());
+      buffer.put(b, offset, count);
+      offset += count;
+      size -= count;
+      length += count;
+      if (!buffer.hasRemaining())
+	writeBuffer();
+    }
+  }
+
+  private final void writeBuffer() throws IOException {
+    int end = buffer.position();
+    buffer.position(0);				  // pad to a whole block
+    buffer.limit((end + ALIGNMENT - 1) & ~(ALIGNMENT - 1));
+    while (buffer.hasRemaining())
+      position += channel.write(buffer, position);
+    buffer.clear();
+  }
+
+  public final void close() throws IOException {
+    try {
+      super.close();
+      if (buffer.position() > 0) {
+	writeBuffer();				  // write padded final block
+	channel.truncate(length);		  // then drop the padding
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /** Random-access methods */
+  public final void seek(long pos) throws IOException {
+    throw new IOException("seek not supported with direct i/o");
+  }
+  public final long length() throws IOException {
+    return length;
+  }
+}
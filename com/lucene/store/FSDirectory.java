@@ -23,6 +23,15 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.io.FileNotFoundException;
 import java.util.Hashtable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.AtomicMoveNotSupportedException;
 
 import com.lucene.store.Directory;
 import com.lucene.store.InputStream;
@@ -50,7 +59,9 @@ final public class FSDirectory extends Directory {
    * synchronization on directories.
    * 
    * @param path the path to the directory.
-   * @param create if true, create, or erase any existing contents.
+   * @param create if true, create, or erase any existing contents, without
+   * regard to any lock: an index is instead replaced by opening an
+   * IndexWriter which creates one.
    * @returns the FSDirectory for the named file.  */
   public static FSDirectory getDirectory(String path, boolean create)
       throws IOException {
@@ -64,7 +75,9 @@ final public class FSDirectory extends Directory {
    * synchronization on directories.
    * 
    * @param file the path to the directory.
-   * @param create if true, create, or erase any existing contents.
+   * @param create if true, create, or erase any existing contents, without
+   * regard to any lock: an index is instead replaced by opening an
+   * IndexWriter which creates one.
    * @returns the FSDirectory for the named file.  */
   public static FSDirectory getDirectory(File file, boolean create)
     throws IOException {
@@ -85,6 +98,42 @@ final public class FSDirectory extends Directory {
 
   private File directory = null;
   private int refCount;
+  private int bufferSize = OutputStream.BUFFER_SIZE;
+  private boolean directMerges = false;
+
+  /** The constructors of the direct i/o streams, or null if they are not
+   * available.  Those streams need JDK 10, so they are loaded reflectively:
+   * builds for older JDKs leave them out, and merges then use ordinary
+   * streams. */
+  private static final Constructor DIRECT_INPUT =
+    directConstructor("com.lucene.store.FSDirectInputStream");
+  private static final Constructor DIRECT_OUTPUT =
+    directConstructor("com.lucene.store.FSDirectOutputStream");
+
+  private static Constructor directConstructor(String className) {
+    try {
+      Class c = Class.forName(className);
+      if (Class.forName("com.lucene.store.FSDirectOutputStream")
+	  .getDeclaredField("DIRECT").get(null) == null)
+	return null;				  // platform has no direct i/o
+      return c.getConstructor(new Class[] { File.class });
+    } catch (Throwable e) {			  // not built, or JDK too old
+      return null;
+    }
+  }
+
+  private static Object newDirectStream(Constructor constructor, File file)
+       throws IOException {
+    try {
+      return constructor.newInstance(new Object[] { file });
+    } catch (InvocationTargetException e) {
+      if (e.getTargetException() instanceof IOException)
+	throw (IOException)e.getTargetException();
+      throw new IOException(e.getTargetException().toString());
+    } catch (Exception e) {
+      throw new IOException(e.toString());
+    }
+  }
 
   public FSDirectory(File path, boolean create) throws IOException {
     directory = path;
@@ -96,6 +145,8 @@ final public class FSDirectory extends Directory {
     if (create) {				  // clear old files
       String[] files = directory.list();
       for (int i = 0; i < files.length; i++) {
+	if (files[i].endsWith(".lock"))
+	  continue;				  // may be held by a writer
 	File file = new File(directory, files[i]);
 	if (!file.delete())
 	  throw new IOException("couldn't delete " + files[i]);
@@ -104,6 +155,11 @@ final public class FSDirectory extends Directory {
 
   }
 
+  /** Returns the path of this directory. */
+  public final File getFile() {
+    return directory;
+  }
+
   /** Returns an array of strings, one for each file in the directory. */
   public final String[] list() throws IOException {
     return directory.list();
@@ -147,9 +203,18 @@ final public class FSDirectory extends Directory {
     File old = new File(directory, from);
     File nu = new File(directory, to);
 
+    try {					  // replace atomically
+      Files.move(old.toPath(), nu.toPath(),
+		 StandardCopyOption.ATOMIC_MOVE,
+		 StandardCopyOption.REPLACE_EXISTING);
+      return;
+    } catch (AtomicMoveNotSupportedException e) {
+    } catch (IOException e) {
+    }
+
     /* This is not atomic.  If the program crashes between the call to
-       delete() and the call to renameTo() then we're screwed, but I've
-       been unable to figure out how else to do this... */
+       delete() and the call to renameTo() then we're screwed, but it is
+       only used where the file system cannot replace a file atomically. */
 
     if (nu.exists())
       if (!nu.delete())
@@ -159,15 +224,122 @@ final public class FSDirectory extends Directory {
       throw new IOException("couldn't rename " + from + " to " + to);
   }
 
+  /** Forces the named file's contents, and then the directory itself, to
+   * disk.  Some platforms cannot sync a directory; there only the file is
+   * synced.  The file is opened read-only, so that syncing a missing file
+   * fails rather than creating it. */
+  public final void sync(String name) throws IOException {
+    FileChannel file = FileChannel.open(new File(directory, name).toPath(),
+					StandardOpenOption.READ);
+    try {
+      file.force(true);
+    } finally {
+      file.close();
+    }
+
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      return;					  // e.g., on Windows
+    }
+    try {
+      channel.force(true);
+    } catch (IOException e) {
+    } finally {
+      channel.close();
+    }
+  }
+
+  /** Returns a lock on the named file in this directory, using the native
+   * locking of the file system.  It excludes other processes as well as other
+   * users in this process, and is released by the operating system if the
+   * process dies, so that it is never left stale. */
+  public final Lock makeLock(String name) {
+    return new NativeFSLock(new File(directory, name));
+  }
+
+  /** Sets the buffer size used by streams opened and created without an
+   * explicit buffer size.  Larger buffers mean fewer system calls but more
+   * memory per open stream. */
+  public final void setBufferSize(int bufferSize) {
+    InputStream.checkBufferSize(bufferSize);
+    this.bufferSize = bufferSize;
+  }
+
+  /** Returns the buffer size used by streams opened and created without an
+   * explicit buffer size. */
+  public final int getBufferSize() {
+    return bufferSize;
+  }
+
   /** Creates a new, empty file in the directory with the given name.
       Returns a stream writing this file. */
   public final OutputStream createFile(String name) throws IOException {
-    return new FSOutputStream(new File(directory, name));
+    return createFile(name, bufferSize);
+  }
+
+  /** Creates a new, empty file in the directory with the given name.
+      Returns a stream writing this file <code>bufferSize</code> bytes at a
+      time. */
+  public final OutputStream createFile(String name, int bufferSize)
+       throws IOException {
+    return new FSOutputStream(new File(directory, name), bufferSize);
   }
 
   /** Returns a stream reading an existing file. */
   public final InputStream openFile(String name) throws IOException {
-    return new FSInputStream(new File(directory, name));
+    return openFile(name, bufferSize);
+  }
+
+  /** Returns a stream reading an existing file <code>bufferSize</code> bytes
+      at a time. */
+  public final InputStream openFile(String name, int bufferSize)
+       throws IOException {
+    return new FSInputStream(new File(directory, name), bufferSize);
+  }
+
+  /** If true, files read and written by merges bypass the operating
+   * system's page cache, so that large merges do not evict the pages used by
+   * searches.  This requires JDK 10 or later and a platform which supports
+   * direct I/O, such as Linux.  Elsewhere, or if the file system refuses
+   * direct I/O, merges use ordinary streams. */
+  public final void setDirectMerges(boolean directMerges) {
+    this.directMerges = directMerges;
+  }
+
+  /** Returns true if merges bypass the page cache where possible.
+   * @see #setDirectMerges(boolean) */
+  public final boolean getDirectMerges() {
+    return directMerges;
+  }
+
+  /** Creates a new, empty file for a merge.  When {@link
+   * #setDirectMerges(boolean)} is enabled, the returned stream does not
+   * support seeking. */
+  public final OutputStream createMergeFile(String name) throws IOException {
+    File file = new File(directory, name);
+    if (directMerges && DIRECT_OUTPUT != null) {
+      if (file.isFile())
+	throw new IOException(file + " already exists");
+      try {
+	return (OutputStream)newDirectStream(DIRECT_OUTPUT, file);
+      } catch (IOException e) {			  // direct i/o not supported
+	file.delete();
+      }
+    }
+    return createFile(name, OutputStream.MERGE_BUFFER_SIZE);
+  }
+
+  /** Returns a stream reading an existing file for a merge. */
+  public final InputStream openMergeFile(String name) throws IOException {
+    if (directMerges && DIRECT_INPUT != null) {
+      try {
+	return (InputStream)
+	  newDirectStream(DIRECT_INPUT, new File(directory, name));
+      } catch (IOException e) {}		  // direct i/o not supported
+    }
+    return openFile(name, InputStream.MERGE_BUFFER_SIZE);
   }
 
   /** Closes the store to future operations. */
@@ -192,7 +364,8 @@ final class FSInputStream extends InputStream {
   Descriptor file = null;
   boolean isClone;
 
-  public FSInputStream(File path) throws IOException {
+  public FSInputStream(File path, int bufferSize) throws IOException {
+    super(bufferSize);
     file = new Descriptor(path, "r");
     length = file.length();
   }
@@ -241,7 +414,8 @@ final class FSInputStream extends InputStream {
 final class FSOutputStream extends OutputStream {
   RandomAccessFile file = null;
 
-  public FSOutputStream(File path) throws IOException {
+  public FSOutputStream(File path, int bufferSize) throws IOException {
+    super(bufferSize);
     if (path.isFile())
       throw new IOException(path + " already exists");
     file = new RandomAccessFile(path, "rw");
@@ -251,6 +425,10 @@ final class FSOutputStream extends OutputStream {
   public final void flushBuffer(byte[] b, int size) throws IOException {
     file.write(b, 0, size);
   }
+  protected final void flushBuffer(byte[] b, int offset, int size)
+       throws IOException {
+    file.write(b, offset, size);
+  }
   public final void close() throws IOException {
     super.close();
     file.close();
@@ -270,3 +448,77 @@ final class FSOutputStream extends OutputStream {
   }
 
 }
+
+
+/** A lock obtained with {@link FileChannel#tryLock()}. */
+final class NativeFSLock extends Lock {
+  /** The paths locked by this process.  These are checked before a lock
+   * file is opened, since on some platforms closing any channel of a file
+   * releases every lock which the process holds on it. */
+  private static final Hashtable HELD = new Hashtable();
+
+  private File path;
+  private RandomAccessFile file = null;
+  private FileLock lock = null;
+
+  NativeFSLock(File path) {
+    this.path = path;
+  }
+
+  public final synchronized boolean obtain() throws IOException {
+    if (lock != null)
+      return false;				  // already held by us
+    String key = path.getCanonicalPath();
+    synchronized (HELD) {
+      if (HELD.containsKey(key))
+	return false;				  // held in this process
+      HELD.put(key, this);
+    }
+    try {
+      file = new RandomAccessFile(path, "rw");
+      try {
+	lock = file.getChannel().tryLock();
+      } catch (OverlappingFileLockException e) {
+	lock = null;
+      }
+    } finally {
+      if (lock == null) {
+	if (file != null)
+	  file.close();
+	file = null;
+	synchronized (HELD) {
+	  HELD.remove(key);
+	}
+      }
+    }
+    return lock != null;
+  }
+
+  public final synchronized void release() throws IOException {
+    if (lock == null)
+      return;
+    try {
+      lock.release();
+    } finally {
+      lock = null;
+      file.close();
+      file = null;
+      synchronized (HELD) {
+	HELD.remove(path.getCanonicalPath());
+      }
+    }
+  }
+
+  public final synchronized boolean isLocked() throws IOException {
+    if (lock != null)
+      return true;
+    if (!obtain())
+      return true;
+    release();
+    return false;
+  }
+
+  public final String toString() {
+    return "NativeFSLock: " + path;
+  }
+}
@@ -28,6 +28,10 @@ import java.io.IOException;
 abstract public class InputStream implements Cloneable {
   final static int BUFFER_SIZE = OutputStream.BUFFER_SIZE;
 
+  /** A larger buffer size, for long sequential reads such as merging. */
+  public final static int MERGE_BUFFER_SIZE = OutputStream.MERGE_BUFFER_SIZE;
+
+  private int bufferSize = BUFFER_SIZE;
   private byte[] buffer;
   private char[] chars;
 
@@ -37,6 +41,42 @@ abstract public class InputStream implements Cloneable {
 
   protected long length;			  // set by subclasses
 
+  protected InputStream() {
+  }
+
+  /** Constructs a stream which reads <code>bufferSize</code> bytes at a
+    time. */
+  protected InputStream(int bufferSize) {
+    checkBufferSize(bufferSize);
+    this.bufferSize = bufferSize;
+  }
+
+  /** Changes the number of bytes read at a time.  Any buffered data is
+    discarded. */
+  public final void setBufferSize(int size) throws IOException {
+    checkBufferSize(size);
+    if (size != bufferSize) {
+      long pos = getFilePointer();
+      bufferSize = size;
+      buffer = null;				  // reallocate on next refill()
+      bufferStart = pos;
+      bufferPosition = 0;
+      bufferLength = 0;
+      seekInternal(pos);
+    }
+  }
+
+  /** Returns the number of bytes read at a time. */
+  public final int getBufferSize() {
+    return bufferSize;
+  }
+
+  static final void checkBufferSize(int size) {
+    if (size <= 0)
+      throw new IllegalArgumentException("bufferSize must be positive: "
+					 + size);
+  }
+
   /** InputStream-like methods @see java.io.InputStream */
   public final byte readByte() throws IOException {
     if (bufferPosition >= bufferLength)
@@ -46,11 +86,31 @@ abstract public class InputStream implements Cloneable {
 
   public final void readBytes(byte[] b, int offset, int len)
        throws IOException {
-    if (len < BUFFER_SIZE) {
-      for (int i = 0; i < len; i++)		  // read byte-by-byte
-	b[i + offset] = (byte)readByte();
+    int available = bufferLength - bufferPosition;
+    if (len <= available) {			  // all in buffer
+      if (len > 0)
+	System.arraycopy(buffer, bufferPosition, b, offset, len);
+      bufferPosition += len;
+      return;
+    }
+
+    if (available > 0) {			  // drain buffer
+      System.arraycopy(buffer, bufferPosition, b, offset, available);
+      offset += available;
+      len -= available;
+      bufferPosition += available;
+    }
+
+    if (len < bufferSize) {			  // refill, then copy
+      refill();
+      if (bufferLength < len)
+	throw new IOException("read past EOF");
+      System.arraycopy(buffer, 0, b, offset, len);
+      bufferPosition = len;
     } else {					  // read all-at-once
       long start = getFilePointer();
+      if (start + len > length)
+	throw new IOException("read past EOF");
       seekInternal(start);
       readInternal(b, offset, len);
 
@@ -117,7 +177,7 @@ abstract public class InputStream implements Cloneable {
 
   protected final void refill() throws IOException {
     long start = bufferStart + bufferPosition;
-    long end = start + BUFFER_SIZE;
+    long end = start + bufferSize;
     if (end > length)				  // don't read past EOF
       end = length;
     bufferLength = (int)(end - start);
@@ -125,7 +185,7 @@ abstract public class InputStream implements Cloneable {
       throw new IOException("read past EOF");
 
     if (buffer == null)
-      buffer = new byte[BUFFER_SIZE];		  // allocate buffer lazily
+      buffer = new byte[bufferSize];		  // allocate buffer lazily
     readInternal(buffer, 0, bufferLength);
 
     bufferStart = start;
@@ -165,7 +225,7 @@ abstract public class InputStream implements Cloneable {
     } catch (CloneNotSupportedException e) {}
 
     if (buffer != null) {
-      clone.buffer = new byte[BUFFER_SIZE];
+      clone.buffer = new byte[bufferSize];
       System.arraycopy(buffer, 0, clone.buffer, 0, bufferLength);
     }
 
@@ -0,0 +1,36 @@
+/* Lock.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.store;
+
+import java.io.IOException;
+
+/** An exclusive lock on a name in a {@link Directory}, used, e.g., to ensure
+  that only one IndexWriter modifies an index at a time.
+  @see Directory#makeLock(String) */
+public abstract class Lock {
+  /** Attempts to obtain this lock without waiting.  Returns true if it was
+    obtained. */
+  public abstract boolean obtain() throws IOException;
+
+  /** Releases this lock. */
+  public abstract void release() throws IOException;
+
+  /** Returns true if this lock is held, by this or any other process. */
+  public abstract boolean isLocked() throws IOException;
+}
@@ -28,20 +28,69 @@ import java.io.IOException;
 abstract public class OutputStream {
   final static int BUFFER_SIZE = 1024;
 
-  private final byte[] buffer = new byte[BUFFER_SIZE];
+  /** A larger buffer size, for long sequential writes such as merging. */
+  public final static int MERGE_BUFFER_SIZE = 16384;
+
+  private int bufferSize = BUFFER_SIZE;
+  private byte[] buffer;
   private long bufferStart = 0;			  // position in file of buffer
   private int bufferPosition = 0;		  // position in buffer
 
+  protected OutputStream() {
+    buffer = new byte[bufferSize];
+  }
+
+  /** Constructs a stream which writes <code>bufferSize</code> bytes at a
+    time. */
+  protected OutputStream(int bufferSize) {
+    InputStream.checkBufferSize(bufferSize);
+    this.bufferSize = bufferSize;
+    buffer = new byte[bufferSize];
+  }
+
+  /** Changes the number of bytes written at a time.  Any buffered data is
+    first flushed. */
+  public final void setBufferSize(int size) throws IOException {
+    InputStream.checkBufferSize(size);
+    if (size != bufferSize) {
+      flush();
+      bufferSize = size;
+      buffer = new byte[size];
+    }
+  }
+
+  /** Returns the number of bytes written at a time. */
+  public final int getBufferSize() {
+    return bufferSize;
+  }
+
   /** OutputStream-like methods @see java.io.InputStream */
   public final void writeByte(byte b) throws IOException {
-    if (bufferPosition >= BUFFER_SIZE)
+    if (bufferPosition >= bufferSize)
       flush();
     buffer[bufferPosition++] = b;
   }
 
   public final void writeBytes(byte[] b, int length) throws IOException {
-    for (int i = 0; i < length; i++)
-      writeByte(b[i]);
+    writeBytes(b, 0, length);
+  }
+
+  public final void writeBytes(byte[] b, int offset, int length)
+       throws IOException {
+    if (length <= bufferSize - bufferPosition) {  // fits in buffer
+      System.arraycopy(b, offset, buffer, bufferPosition, length);
+      bufferPosition += length;
+      return;
+    }
+
+    flush();
+    if (length < bufferSize) {			  // copy to empty buffer
+      System.arraycopy(b, offset, buffer, 0, length);
+      bufferPosition = length;
+    } else {					  // write all-at-once
+      flushBuffer(b, offset, length);
+      bufferStart += length;
+    }
   }
 
   public final void writeInt(int i) throws IOException {
@@ -104,6 +153,19 @@ abstract public class OutputStream {
 
   abstract protected void flushBuffer(byte[] b, int len) throws IOException;
 
+  /** Writes <code>len</code> bytes of <code>b</code> starting at
+    <code>offset</code>.  Subclasses should override this to avoid the
+    copy. */
+  protected void flushBuffer(byte[] b, int offset, int len)
+       throws IOException {
+    if (offset != 0) {
+      byte[] copy = new byte[len];
+      System.arraycopy(b, offset, copy, 0, len);
+      b = copy;
+    }
+    flushBuffer(b, len);
+  }
+
   public void close() throws IOException {
     flush();
   }
@@ -35,12 +35,14 @@ final public class RAMDirectory extends Directory {
 
   /** Returns an array of strings, one for each file in the directory. */
   public final String[] list() {
-    String[] result = new String[files.size()];
-    int i = 0;
-    Enumeration names = files.keys();
-    while (names.hasMoreElements())
-      result[i++] = (String)names.nextElement();
-    return result;
+    synchronized (files) {			  // files may be deleted meanwhile
+      String[] result = new String[files.size()];
+      int i = 0;
+      Enumeration names = files.keys();
+      while (names.hasMoreElements())
+	result[i++] = (String)names.nextElement();
+      return result;
+    }
   }
        
   /** Returns true iff the named file exists in this directory. */
@@ -68,9 +70,11 @@ final public class RAMDirectory extends Directory {
 
   /** Removes an existing file in the directory. */
   public final void renameFile(String from, String to) {
-    RAMFile file = (RAMFile)files.get(from);
-    files.remove(from);
-    files.put(to, file);
+    synchronized (files) {			  // seen by list() as one change
+      RAMFile file = (RAMFile)files.get(from);
+      files.remove(from);
+      files.put(to, file);
+    }
   }
 
   /** Creates a new, empty file in the directory with the given name.
@@ -104,18 +108,18 @@ final class RAMInputStream extends InputStream implements Cloneable {
 
   /** InputStream methods */
   public final void readInternal(byte[] dest, int destOffset, int len) {
-    int bufferNumber = pointer/InputStream.BUFFER_SIZE;
-    int bufferOffset = pointer%InputStream.BUFFER_SIZE;
-    int bytesInBuffer = InputStream.BUFFER_SIZE - bufferOffset;
-    int bytesToCopy = bytesInBuffer >= len ? len : bytesInBuffer;
-    byte[] buffer = (byte[])file.buffers.elementAt(bufferNumber);
-    System.arraycopy(buffer, bufferOffset, dest, destOffset, bytesToCopy);
-
-    if (bytesToCopy < len) {			  // not all in one buffer
+    int remainder = len;
+    int start = pointer;
+    while (remainder != 0) {			  // may span several buffers
+      int bufferNumber = start/RAMFile.BUFFER_SIZE;
+      int bufferOffset = start%RAMFile.BUFFER_SIZE;
+      int bytesInBuffer = RAMFile.BUFFER_SIZE - bufferOffset;
+      int bytesToCopy = bytesInBuffer >= remainder ? remainder : bytesInBuffer;
+      byte[] buffer = (byte[])file.buffers.elementAt(bufferNumber);
+      System.arraycopy(buffer, bufferOffset, dest, destOffset, bytesToCopy);
       destOffset += bytesToCopy;
-      bytesToCopy = len - bytesToCopy;		  // remaining bytes
-      buffer = (byte[])file.buffers.elementAt(bufferNumber+1);
-      System.arraycopy(buffer, 0, dest, destOffset, bytesToCopy);
+      start += bytesToCopy;
+      remainder -= bytesToCopy;
     }
     pointer += len;
   }
@@ -139,25 +143,26 @@ final class RAMOutputStream extends OutputStream {
 
   /** output methods: */
   public final void flushBuffer(byte[] src, int len) {
-    int bufferNumber = pointer/OutputStream.BUFFER_SIZE;
-    int bufferOffset = pointer%OutputStream.BUFFER_SIZE;
-    int bytesInBuffer = OutputStream.BUFFER_SIZE - bufferOffset;
-    int bytesToCopy = bytesInBuffer >= len ? len : bytesInBuffer;
-
-    if (bufferNumber == file.buffers.size())
-      file.buffers.addElement(new byte[OutputStream.BUFFER_SIZE]);
+    flushBuffer(src, 0, len);
+  }
 
-    byte[] buffer = (byte[])file.buffers.elementAt(bufferNumber);
-    System.arraycopy(src, 0, buffer, bufferOffset, bytesToCopy);
+  protected final void flushBuffer(byte[] src, int srcOffset, int len) {
+    int remainder = len;
+    int start = pointer;
+    while (remainder != 0) {			  // may span several buffers
+      int bufferNumber = start/RAMFile.BUFFER_SIZE;
+      int bufferOffset = start%RAMFile.BUFFER_SIZE;
+      int bytesInBuffer = RAMFile.BUFFER_SIZE - bufferOffset;
+      int bytesToCopy = bytesInBuffer >= remainder ? remainder : bytesInBuffer;
 
-    if (bytesToCopy < len) {			  // not all in one buffer
-      int srcOffset = bytesToCopy;
-      bytesToCopy = len - bytesToCopy;		  // remaining bytes
-      bufferNumber++;
       if (bufferNumber == file.buffers.size())
-	file.buffers.addElement(new byte[OutputStream.BUFFER_SIZE]);
-      buffer = (byte[])file.buffers.elementAt(bufferNumber);
-      System.arraycopy(src, srcOffset, buffer, 0, bytesToCopy);
+	file.buffers.addElement(new byte[RAMFile.BUFFER_SIZE]);
+
+      byte[] buffer = (byte[])file.buffers.elementAt(bufferNumber);
+      System.arraycopy(src, srcOffset, buffer, bufferOffset, bytesToCopy);
+      srcOffset += bytesToCopy;
+      start += bytesToCopy;
+      remainder -= bytesToCopy;
     }
     pointer += len;
     if (pointer > file.length)
@@ -181,6 +186,8 @@ final class RAMOutputStream extends OutputStream {
 }
 
 final class RAMFile {
+  final static int BUFFER_SIZE = 1024;		  // independent of stream buffers
+
   Vector buffers = new Vector();
   long length;
   long lastModified = System.currentTimeMillis();
@@ -30,7 +30,7 @@ import com.lucene.store.OutputStream;
   <LI>inlinable get() method;</LI>
   </UL>
   */
-public final class BitVector {
+public final class BitVector implements Cloneable {
   /** This is public just so that methods will inline.  Please don't touch.*/
   public byte[] bits;
   private int size;
@@ -42,16 +42,32 @@ public final class BitVector {
     bits = new byte[(size >> 3) + 1];
   }
 
+  /** Returns a copy of this vector, which may be changed independently. */
+  public final Object clone() {
+    BitVector clone = new BitVector(size);
+    System.arraycopy(bits, 0, clone.bits, 0, bits.length);
+    clone.count = count;
+    return clone;
+  }
+
   /** Sets the value of <code>bit</code> to one. */
   public final void set(int bit) {
-    bits[bit >> 3] |= 1 << (bit & 7);
-    count = -1;
+    int mask = 1 << (bit & 7);
+    if ((bits[bit >> 3] & mask) == 0) {
+      bits[bit >> 3] |= mask;
+      if (count != -1)
+	count++;				  // keep count current
+    }
   }
 
   /** Sets the value of <code>bit</code> to zero. */
   public final void clear(int bit) {
-    bits[bit >> 3] &= ~(1 << (bit & 7));
-    count = -1;
+    int mask = 1 << (bit & 7);
+    if ((bits[bit >> 3] & mask) != 0) {
+      bits[bit >> 3] &= ~mask;
+      if (count != -1)
+	count--;				  // keep count current
+    }
   }
 
   /** Returns <code>true</code> if <code>bit</code> is one and
@@ -100,30 +116,90 @@ public final class BitVector {
   };
 
 
+  /** Marks the sparse format, which in place of the bits has the gaps
+    between the numbers of the one bits.  Older files always hold the bits,
+    and begin with the size, which is never negative. */
+  private static final int SPARSE = -1;
+
   /** Writes this vector to the file <code>name</code> in Directory
     <code>d</code>, in a format that can be read by the constructor {@link
-    #BitVector(Directory, String)}.  */
+    #BitVector(Directory, String)}.  When few bits are set, only the gaps
+    between them are written, so that a vector with a few ones costs a few
+    bytes rather than one bit per element.  */
   public final void write(Directory d, String name) throws IOException {
     OutputStream output = d.createFile(name);
     try {
-      output.writeInt(size());			  // write size
-      output.writeInt(count());			  // write count
-      output.writeBytes(bits, bits.length);	  // write bits
+      if (sparseLength() < bits.length) {
+	output.writeInt(SPARSE);		  // write format
+	output.writeInt(size());		  // write size
+	output.writeInt(count());		  // write count
+	int last = 0;
+	for (int i = 0; i < bits.length; i++) {	  // write gaps
+	  if (bits[i] == 0)
+	    continue;				  // skip empty bytes
+	  for (int j = 0; j < 8; j++) {
+	    if ((bits[i] & (1 << j)) != 0) {
+	      int bit = (i << 3) + j;
+	      output.writeVInt(bit - last);
+	      last = bit;
+	    }
+	  }
+	}
+      } else {
+	output.writeInt(size());		  // write size
+	output.writeInt(count());		  // write count
+	output.writeBytes(bits, bits.length);	  // write bits
+      }
     } finally {
       output.close();
     }
   }
 
+  /** Returns the number of bytes needed to write the gaps between one bits,
+    stopping once it is clear that the bits themselves are shorter. */
+  private final int sparseLength() {
+    int length = 0;
+    int last = 0;
+    for (int i = 0; i < bits.length && length < bits.length; i++) {
+      if (bits[i] == 0)
+	continue;
+      for (int j = 0; j < 8; j++) {
+	if ((bits[i] & (1 << j)) != 0) {
+	  int gap = (i << 3) + j - last;
+	  last += gap;
+	  length++;
+	  while ((gap & ~0x7F) != 0) {		  // count VInt bytes
+	    length++;
+	    gap >>>= 7;
+	  }
+	}
+      }
+    }
+    return length;
+  }
+
   /** Constructs a bit vector from the file <code>name</code> in Directory
     <code>d</code>, as written by the {@link #write} method.
     */
   public BitVector(Directory d, String name) throws IOException {
     InputStream input = d.openFile(name);
     try {
-      size = input.readInt();			  // read size
-      count = input.readInt();			  // read count
-      bits = new byte[(size >> 3) + 1];		  // allocate bits
-      input.readBytes(bits, 0, bits.length);	  // read bits
+      int format = input.readInt();
+      if (format == SPARSE) {
+	size = input.readInt();			  // read size
+	count = input.readInt();		  // read count
+	bits = new byte[(size >> 3) + 1];	  // allocate bits
+	int bit = 0;
+	for (int i = 0; i < count; i++) {	  // read gaps
+	  bit += input.readVInt();
+	  bits[bit >> 3] |= 1 << (bit & 7);
+	}
+      } else {
+	size = format;				  // read size
+	count = input.readInt();		  // read count
+	bits = new byte[(size >> 3) + 1];	  // allocate bits
+	input.readBytes(bits, 0, bits.length);	  // read bits
+      }
     } finally {
       input.close();
     }
@@ -0,0 +1,138 @@
+/* PackedInts.java
+ *
+ * Copyright (c) 1997, 2000 Douglass R. Cutting.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307  USA
+ */
+package com.lucene.util;
+import java.io.IOException;
+import com.lucene.store.InputStream;
+import com.lucene.store.OutputStream;
+
+/** A fixed-size array of non-negative integers, each packed into the same
+  number of bits.  Values are stored in an array of longs, so that any value
+  may be retrieved in constant time with a shift and a mask.  A value of up
+  to 64 bits is treated as unsigned, so that, e.g., the difference between
+  two arbitrary longs may be stored. */
+public final class PackedInts {
+  private long[] blocks;
+  private int size;
+  private int bitsPerValue;
+  private long mask;
+
+  /** Constructs an array of <code>size</code> zeros, each packed into
+    <code>bitsPerValue</code> bits. */
+  public PackedInts(int size, int bitsPerValue) {
+    if (bitsPerValue < 0 || bitsPerValue > 64)
+      throw new IllegalArgumentException("bitsPerValue must be <=64");
+    this.size = size;
+    this.bitsPerValue = bitsPerValue;
+    mask = bitsPerValue == 64 ? -1L : (1L << bitsPerValue) - 1L;
+    blocks = new long[(int)(blocksLength(size, bitsPerValue) >>> 3)];
+  }
+
+  /** Returns the number of bits needed to represent <code>maxValue</code>,
+    treated as unsigned. */
+  public static final int bitsRequired(long maxValue) {
+    int bits = 0;
+    while (maxValue != 0) {
+      bits++;
+      maxValue >>>= 1;
+    }
+    return bits;
+  }
+
+  /** Returns the value at <code>index</code>. */
+  public final long get(int index) {
+    if (bitsPerValue == 0)
+      return 0L;
+    long bit = (long)index * bitsPerValue;
+    int block = (int)(bit >>> 6);
+    int offset = (int)(bit & 63);
+    long value = blocks[block] >>> offset;
+    if (offset + bitsPerValue > 64)		  // spans two blocks
+      value |= blocks[block + 1] << (64 - offset);
+    return value & mask;
+  }
+
+  /** Sets the value at <code>index</code>.  Only the low
+    <code>bitsPerValue</code> bits of <code>value</code> are kept. */
+  public final void set(int index, long value) {
+    if (bitsPerValue == 0)
+      return;
+    value &= mask;
+    long bit = (long)index * bitsPerValue;
+    int block = (int)(bit >>> 6);
+    int offset = (int)(bit & 63);
+    blocks[block] = (blocks[block] & ~(mask << offset)) | (value << offset);
+    if (offset + bitsPerValue > 64) {		  // spans two blocks
+      int shift = 64 - offset;
+      blocks[block + 1] = (blocks[block + 1] & ~(mask >>> shift))
+	| (value >>> shift);
+    }
+  }
+
+  /** Returns the number of values in this array. */
+  public final int size() {
+    return size;
+  }
+
+  /** Returns the number of bits used per value. */
+  public final int bitsPerValue() {
+    return bitsPerValue;
+  }
+
+  /** Writes this array to <code>output</code>, in a format that can be read
+    by the constructor {@link #PackedInts(InputStream)}. */
+  public final void write(OutputStream output) throws IOException {
+    output.writeVInt(size);			  // write size
+    output.writeByte((byte)bitsPerValue);	  // write bits per value
+    for (int i = 0; i < blocks.length; i++)
+      output.writeLong(blocks[i]);		  // write blocks
+  }
+
+  /** Returns the number of bytes {@link #write} writes for the blocks of an
+    array of <code>size</code> values of <code>bitsPerValue</code> bits. */
+  public static final long blocksLength(int size, int bitsPerValue) {
+    return (((long)size * bitsPerValue + 63) >>> 6) << 3;
+  }
+
+  /** Returns the value at <code>index</code> of an array written by {@link
+    #write}, without reading the array into memory.  Only the blocks holding
+    the value are read from <code>input</code>, in which the array's blocks
+    start at <code>blocksStart</code>, just after its size and bits per
+    value. */
+  public static final long get(InputStream input, long blocksStart,
+			       int bitsPerValue, int index)
+       throws IOException {
+    if (bitsPerValue == 0)
+      return 0L;
+    long bit = (long)index * bitsPerValue;
+    int offset = (int)(bit & 63);
+    input.seek(blocksStart + ((bit >>> 6) << 3));
+    long value = input.readLong() >>> offset;
+    if (offset + bitsPerValue > 64)		  // spans two blocks
+      value |= input.readLong() << (64 - offset);
+    return bitsPerValue == 64 ? value : value & ((1L << bitsPerValue) - 1L);
+  }
+
+  /** Constructs an array from <code>input</code>, as written by the {@link
+    #write} method. */
+  public PackedInts(InputStream input) throws IOException {
+    this(input.readVInt(), input.readByte());
+    for (int i = 0; i < blocks.length; i++)
+      blocks[i] = input.readLong();		  // read blocks
+  }
+}
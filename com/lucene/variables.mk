@@ -6,8 +6,10 @@
 # Default is: C:/jdk1.3 or /usr/local/java/jdk1.3 depending on OS
 # JDK_HOME=
 
-# set this if you are using JDK1.1.x
-# OLDJAVA=1
+# Lucene requires JDK 1.7 or later.  Direct i/o merges (see
+# FSDirectory.setDirectMerges) require JDK 10; set this to leave them out
+# when building with JDK 8 or older.
+# NODIRECTIO=1
 
 # set this if you are using a custom java compiler (i.e. jikes)
 # Default is: $JDK_HOME/bin/javac
@@ -0,0 +1,139 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import java.util.Vector;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestCommit extends TestCase {
+
+  public TestCommit(String name) {
+    super(name);
+  }
+
+  /** A RAMDirectory which records the files that are synced. */
+  private static class SyncDirectory extends Directory {
+    private RAMDirectory dir = new RAMDirectory();
+    Vector synced = new Vector();
+
+    public String[] list() throws IOException { return dir.list(); }
+    public boolean fileExists(String name) { return dir.fileExists(name); }
+    public long fileModified(String name) throws IOException {
+      return dir.fileModified(name);
+    }
+    public void deleteFile(String name) { dir.deleteFile(name); }
+    public void renameFile(String from, String to) {
+      dir.renameFile(from, to);
+    }
+    public long fileLength(String name) { return dir.fileLength(name); }
+    public OutputStream createFile(String name) {
+      return dir.createFile(name);
+    }
+    public InputStream openFile(String name) { return dir.openFile(name); }
+    public void sync(String name) { synced.addElement(name); }
+    public void close() { dir.close(); }
+  }
+
+  private static Document doc(int i) {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", "" + i));
+    return doc;
+  }
+
+  private static IndexWriter writer(Directory dir, boolean create)
+       throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), create);
+    writer.mergeFactor = 2;			  // merge often
+    return writer;
+  }
+
+  private static int numDocs(Directory dir) throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    int numDocs = reader.numDocs();
+    reader.close();
+    return numDocs;
+  }
+
+  public void testMergesNotCommitted() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    assertEquals(0, numDocs(dir));		  // empty first commit
+    for (int i = 0; i < 10; i++)
+      writer.addDocument(doc(i));
+    writer.optimize();
+    assertEquals(0, numDocs(dir));
+    writer.commit();
+    assertEquals(10, numDocs(dir));
+    writer.addDocument(doc(10));
+    assertEquals(10, numDocs(dir));
+    writer.close();				  // commits
+    assertEquals(11, numDocs(dir));
+  }
+
+  /** A reader keeps reading its commit while a writer merges its segments
+    away. */
+  public void testOldCommitReadable() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 5; i++)
+      writer.addDocument(doc(i));
+    writer.commit();
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = 5; i < 25; i++)
+      writer.addDocument(doc(i));
+    writer.optimize();
+    writer.close();
+
+    assertEquals(5, reader.numDocs());
+    for (int i = 0; i < 5; i++)
+      assertEquals("" + i, reader.document(i).get("id"));
+    reader.close();
+    assertEquals(25, numDocs(dir));
+  }
+
+  public void testPrepareCommit() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    writer.addDocument(doc(0));
+    writer.prepareCommit();
+    assertEquals(0, numDocs(dir));		  // not yet installed
+    try {
+      writer.addDocument(doc(1));
+      fail("document added between prepareCommit and commit");
+    } catch (IllegalStateException e) {}
+    try {
+      writer.prepareCommit();
+      fail("prepareCommit called twice");
+    } catch (IllegalStateException e) {}
+    writer.commit();
+    assertEquals(1, numDocs(dir));
+    writer.addDocument(doc(1));
+    writer.close();
+    assertEquals(2, numDocs(dir));
+  }
+
+  /** Each commit syncs the files written since the previous commit. */
+  public void testSync() throws Exception {
+    SyncDirectory dir = new SyncDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 3; i++)
+      writer.addDocument(doc(i));
+    dir.synced.removeAllElements();
+    writer.commit();
+    String[] names = dir.list();
+    for (int i = 0; i < names.length; i++)
+      assertEquals(names[i], true, dir.synced.contains(names[i]));
+
+    dir.synced.removeAllElements();
+    writer.commit();				  // nothing changed
+    for (int i = 0; i < dir.synced.size(); i++) {
+      String name = (String)dir.synced.elementAt(i);
+      assertEquals(name, true, name.startsWith("segments"));
+    }
+    writer.close();
+  }
+}
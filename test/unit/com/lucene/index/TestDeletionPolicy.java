@@ -0,0 +1,146 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import java.util.Vector;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestDeletionPolicy extends TestCase {
+
+  public TestDeletionPolicy(String name) {
+    super(name);
+  }
+
+  /** Keeps every commit, remembering the latest list. */
+  private static class KeepAllPolicy extends IndexDeletionPolicy {
+    Vector commits;
+    public void onInit(Vector commits) { this.commits = commits; }
+    public void onCommit(Vector commits) { this.commits = commits; }
+  }
+
+  private static void add(IndexWriter writer, int from, int to)
+       throws IOException {
+    for (int i = from; i < to; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", "" + i));
+      writer.addDocument(doc);
+    }
+  }
+
+  private static int countFiles(Directory dir, String prefix)
+       throws IOException {
+    String[] names = dir.list();
+    int n = 0;
+    for (int i = 0; i < names.length; i++)
+      if (names[i].startsWith(prefix))
+	n++;
+    return n;
+  }
+
+  private static int numDocs(IndexCommit commit) throws IOException {
+    IndexReader reader = IndexReader.open(commit);
+    int numDocs = reader.numDocs();
+    reader.close();
+    return numDocs;
+  }
+
+  public void testKeepOnlyLast() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = 2;
+    for (int i = 0; i < 5; i++) {
+      add(writer, i * 3, i * 3 + 3);
+      writer.commit();
+      assertEquals(1, countFiles(dir, "segments"));
+    }
+    writer.optimize();
+    writer.close();
+    assertEquals(1, countFiles(dir, "segments"));
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(15, reader.numDocs());
+    reader.close();
+  }
+
+  /** Files which merely look like index files are left alone. */
+  public void testForeignFiles() throws Exception {
+    String[] foreign =
+      { "_notes.txt", "_0.bak", "_0", "_0.fdt~", "_x_y_z.del" };
+    Directory dir = new RAMDirectory();
+    for (int i = 0; i < foreign.length; i++)
+      dir.createFile(foreign[i]).close();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = 2;
+    add(writer, 0, 10);
+    writer.optimize();
+    writer.close();
+    for (int i = 0; i < foreign.length; i++)
+      assertEquals(foreign[i], true, dir.fileExists(foreign[i]));
+    assertEquals(1, countFiles(dir, "segments"));
+  }
+
+  /** Every commit, including one made by a reader, remains readable. */
+  public void testKeepAll() throws Exception {
+    Directory dir = new RAMDirectory();
+    KeepAllPolicy policy = new KeepAllPolicy();
+    IndexWriter writer =
+      new IndexWriter(dir, new SimpleAnalyzer(), true, policy);
+    writer.mergeFactor = 2;
+    for (int i = 0; i < 4; i++) {
+      add(writer, i * 5, i * 5 + 5);
+      writer.commit();
+    }
+    writer.optimize();
+    writer.close();
+    assertEquals(6, policy.commits.size());	  // with create and optimize
+
+    IndexReader reader = IndexReader.open(dir, policy);
+    reader.delete(0);
+    reader.close();
+    assertEquals(7, policy.commits.size());
+
+    long generation = -1;
+    int[] numDocs = { 0, 5, 10, 15, 20, 20, 19 };
+    for (int i = 0; i < numDocs.length; i++) {
+      IndexCommit commit = (IndexCommit)policy.commits.elementAt(i);
+      assertEquals(true, commit.getGeneration() > generation);
+      generation = commit.getGeneration();
+      assertEquals(numDocs[i], numDocs(commit));
+    }
+  }
+
+  public void testSnapshot() throws Exception {
+    Directory dir = new RAMDirectory();
+    SnapshotDeletionPolicy snapshots =
+      new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+    IndexWriter writer =
+      new IndexWriter(dir, new SimpleAnalyzer(), true, snapshots);
+    writer.mergeFactor = 2;
+    add(writer, 0, 5);
+    writer.commit();
+    IndexCommit commit = snapshots.snapshot();
+    Vector files = commit.getFileNames();
+
+    add(writer, 5, 20);
+    writer.optimize();
+    writer.commit();
+    for (int i = 0; i < files.size(); i++)
+      assertEquals(true, dir.fileExists((String)files.elementAt(i)));
+    assertEquals(5, numDocs(commit));
+    assertEquals(2, countFiles(dir, "segments"));
+
+    snapshots.release(commit);
+    try {
+      snapshots.release(commit);
+      fail("released twice");
+    } catch (IllegalArgumentException e) {}
+    add(writer, 20, 21);
+    writer.close();				  // deletes the snapshot
+    assertEquals(1, countFiles(dir, "segments"));
+    assertEquals(false, dir.fileExists(commit.getSegmentsFileName()));
+  }
+}
@@ -0,0 +1,141 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+import com.lucene.search.*;
+
+public class TestIndexOptions extends TestCase {
+
+  public TestIndexOptions(String name) {
+    super(name);
+  }
+
+  private static Field field(String name, String text, int indexOptions) {
+    Field field = Field.Text(name, text);
+    field.setIndexOptions(indexOptions);
+    return field;
+  }
+
+  private static Document doc(String text) {
+    Document doc = new Document();
+    doc.add(field("full", text, Field.DOCS_AND_FREQS_AND_POSITIONS));
+    doc.add(field("freqs", text, Field.DOCS_AND_FREQS));
+    doc.add(field("docs", text, Field.DOCS_ONLY));
+    return doc;
+  }
+
+  private Directory index(boolean optimize) throws IOException {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = 2;
+    writer.addDocument(doc("a b a c"));
+    writer.addDocument(doc("b c"));
+    writer.addDocument(doc("a a a"));
+    if (optimize)
+      writer.optimize();
+    writer.close();
+    return dir;
+  }
+
+  private void checkPostings(Directory dir) throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(3, reader.numDocs());
+    String[] fields = { "full", "freqs", "docs" };
+    int[] freqs = { 3, 3, 1 };			  // of "a" in the last doc
+    for (int i = 0; i < fields.length; i++) {
+      TermDocs docs = reader.termDocs(new Term(fields[i], "a"));
+      assertEquals(true, docs.next());
+      assertEquals(0, docs.doc());
+      assertEquals(true, docs.next());
+      assertEquals(2, docs.doc());
+      assertEquals(freqs[i], docs.freq());
+      assertEquals(false, docs.next());
+      docs.close();
+    }
+
+    TermPositions positions = reader.termPositions(new Term("full", "a"));
+    assertEquals(true, positions.next());
+    assertEquals(0, positions.nextPosition());
+    assertEquals(2, positions.nextPosition());
+    positions.close();
+    reader.close();
+  }
+
+  public void testPostings() throws Exception {
+    checkPostings(index(false));
+  }
+
+  public void testPostingsAfterMerge() throws Exception {
+    checkPostings(index(true));
+  }
+
+  public void testNoPositions() throws Exception {
+    IndexReader reader = IndexReader.open(index(false));
+    String[] fields = { "freqs", "docs" };
+    for (int i = 0; i < fields.length; i++) {
+      TermPositions positions = reader.termPositions(new Term(fields[i], "a"));
+      assertEquals(true, positions.next());
+      try {
+	positions.nextPosition();
+	fail("positions read for " + fields[i]);
+      } catch (IllegalStateException e) {
+	assertEquals(true, e.getMessage().indexOf(fields[i]) >= 0);
+      }
+      positions.close();
+    }
+    reader.close();
+  }
+
+  private static PhraseQuery phrase(String field) {
+    PhraseQuery query = new PhraseQuery();
+    query.add(new Term(field, "a"));
+    query.add(new Term(field, "c"));
+    return query;
+  }
+
+  public void testPhraseQuery() throws Exception {
+    IndexSearcher searcher = new IndexSearcher(index(true));
+    assertEquals(1, searcher.search(phrase("full")).length());
+    try {
+      searcher.search(phrase("freqs"));
+      fail("phrase query on a field without positions");
+    } catch (IllegalStateException e) {}
+    searcher.close();
+  }
+
+  /** Once merged with a segment which omits positions, a field omits them
+    in every document. */
+  public void testMergeOmitsPositions() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    Document doc = new Document();
+    doc.add(field("f", "a c", Field.DOCS_AND_FREQS_AND_POSITIONS));
+    writer.addDocument(doc);
+    doc = new Document();
+    doc.add(field("f", "a c", Field.DOCS_AND_FREQS));
+    writer.addDocument(doc);
+    writer.optimize();
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    TermDocs docs = reader.termDocs(new Term("f", "a"));
+    int n = 0;
+    while (docs.next())
+      n++;
+    docs.close();
+    assertEquals(2, n);
+    TermPositions positions = reader.termPositions(new Term("f", "a"));
+    assertEquals(true, positions.next());
+    try {
+      positions.nextPosition();
+      fail("positions read after merge");
+    } catch (IllegalStateException e) {}
+    positions.close();
+    reader.close();
+  }
+}
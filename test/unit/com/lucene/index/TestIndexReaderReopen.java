@@ -0,0 +1,96 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestIndexReaderReopen extends TestCase {
+
+  public TestIndexReaderReopen(String name) {
+    super(name);
+  }
+
+  private Directory dir;
+
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    add(0, 20, true);				  // one segment of 20 docs
+  }
+
+  /** Adds documents numbered <code>from</code> up to <code>to</code> in a
+    new segment, and commits them. */
+  private void add(int from, int to, boolean create) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), create);
+    for (int i = from; i < to; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", "" + i));
+      writer.addDocument(doc);
+    }
+    writer.close();
+  }
+
+  public void testUnchanged() throws Exception {
+    IndexReader reader = IndexReader.open(dir);
+    assertSame(reader, reader.reopen());
+    reader.close();
+  }
+
+  public void testSeesNewCommit() throws Exception {
+    IndexReader reader = IndexReader.open(dir);
+    add(20, 22, false);
+    assertEquals(20, reader.numDocs());
+    IndexReader newReader = reader.reopen();
+    assertEquals(22, newReader.numDocs());
+    assertEquals("21", newReader.document(21).get("id"));
+    assertEquals("0", reader.document(0).get("id"));
+    reader.close();
+    assertEquals("0", newReader.document(0).get("id")); // shared segment
+    newReader.close();
+  }
+
+  /** Deletions made through a reopened reader are not seen by the old
+    reader, and closing the old reader does not discard them. */
+  public void testDeletionsNotShared() throws Exception {
+    IndexReader reader = IndexReader.open(dir);
+    add(20, 22, false);
+    IndexReader newReader = reader.reopen();
+    newReader.delete(0);
+    assertEquals(true, newReader.isDeleted(0));
+    assertEquals(false, reader.isDeleted(0));
+    assertEquals(20, reader.numDocs());
+    reader.close();
+    newReader.close();				  // commits the deletion
+
+    reader = IndexReader.open(dir);
+    assertEquals(21, reader.numDocs());
+    assertEquals(true, reader.isDeleted(0));
+    reader.close();
+  }
+
+  /** A reopened reader sees only the committed deletions of the old
+    reader, whose own deletions are then stale. */
+  public void testUncommittedDeletions() throws Exception {
+    IndexReader reader = IndexReader.open(dir);
+    reader.delete(1);
+    add(20, 21, false);
+    IndexReader newReader = reader.reopen();
+    assertEquals(false, newReader.isDeleted(1));
+    assertEquals(true, reader.isDeleted(1));
+    try {
+      reader.close();
+      fail("deletions of a stale reader were committed");
+    } catch (IOException e) {}
+    newReader.delete(2);
+    newReader.close();
+
+    reader = IndexReader.open(dir);
+    assertEquals(20, reader.numDocs());
+    assertEquals(false, reader.isDeleted(1));
+    assertEquals(true, reader.isDeleted(2));
+    reader.close();
+  }
+}
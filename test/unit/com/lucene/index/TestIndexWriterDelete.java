@@ -0,0 +1,167 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+import com.lucene.search.TermQuery;
+
+public class TestIndexWriterDelete extends TestCase {
+
+  public TestIndexWriterDelete(String name) {
+    super(name);
+  }
+
+  private static Document doc(String id, String body) {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", id));
+    doc.add(Field.Text("body", body));
+    return doc;
+  }
+
+  private static IndexWriter writer(Directory dir, boolean create)
+       throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), create);
+    writer.mergeFactor = 2;			  // merge often
+    return writer;
+  }
+
+  private static int count(IndexReader reader, Term term) throws IOException {
+    TermDocs docs = reader.termDocs(term);
+    if (docs == null)
+      return 0;
+    int n = 0;
+    while (docs.next())
+      n++;
+    docs.close();
+    return n;
+  }
+
+  public void testDeleteAcrossMerges() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 20; i++)
+      writer.addDocument(doc("" + i, "old"));
+    writer.deleteDocuments(new Term("id", "3"));
+    for (int i = 20; i < 30; i++)
+      writer.addDocument(doc("" + i, "new"));	  // merges buffered deletes
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(29, reader.numDocs());
+    assertEquals(0, count(reader, new Term("id", "3")));
+    assertEquals(1, count(reader, new Term("id", "4")));
+    reader.close();
+  }
+
+  public void testDeleteOnlyEarlierDocuments() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 5; i++)
+      writer.addDocument(doc("" + i, "x"));
+    writer.deleteDocuments(new Term("body", "x"));
+    writer.addDocument(doc("5", "x"));		  // added after the delete
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(1, reader.numDocs());
+    assertEquals(1, count(reader, new Term("id", "5")));
+    reader.close();
+  }
+
+  public void testDeleteByQuery() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 10; i++)
+      writer.addDocument(doc("" + i, i % 2 == 0 ? "even" : "odd"));
+    writer.deleteDocuments(new TermQuery(new Term("body", "odd")));
+    writer.addDocument(doc("10", "odd"));
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(6, reader.numDocs());
+    assertEquals(1, count(reader, new Term("body", "odd")));
+    reader.close();
+  }
+
+  /** Matches are deleted even when they score zero. */
+  public void testDeleteByZeroScoringQuery() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 10; i++)
+      writer.addDocument(doc("" + i, i % 2 == 0 ? "even" : "odd"));
+    TermQuery query = new TermQuery(new Term("body", "odd"));
+    query.setBoost(0.0f);
+    writer.deleteDocuments(query);
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(5, reader.numDocs());
+    assertEquals(0, count(reader, new Term("body", "odd")));
+    reader.close();
+  }
+
+  public void testUpdateDocument() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 10; i++)
+      writer.addDocument(doc("" + i, "first"));
+    writer.close();
+
+    String[] rounds = { "second", "third", "fourth" };
+    writer = writer(dir, false);
+    for (int round = 0; round < rounds.length; round++)
+      for (int i = 0; i < 10; i += 3)
+	writer.updateDocument(new Term("id", "" + i), doc("" + i, rounds[round]));
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(10, reader.numDocs());
+    for (int i = 0; i < 10; i++)
+      assertEquals(1, count(reader, new Term("id", "" + i)));
+    assertEquals(4, count(reader, new Term("body", "fourth")));
+    assertEquals(0, count(reader, new Term("body", "third")));
+    assertEquals(6, count(reader, new Term("body", "first")));
+    reader.close();
+  }
+
+  /** A merge of segments whose documents are all deleted must not leave an
+    empty segment, which readers would route document numbers to. */
+  public void testExpungeDeletedSegments() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    writer.addDocument(doc("a", "x"));
+    writer.addDocument(doc("b", "x"));
+    writer.addDocument(doc("c", "x"));
+    writer.commit();
+    writer.deleteDocuments(new Term("id", "a"));
+    writer.deleteDocuments(new Term("id", "b"));
+    writer.expungeDeletes();
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(1, reader.numDocs());
+    assertEquals("c", reader.document(0).get("id"));
+    reader.close();
+  }
+
+  public void testOptimizeAllDeleted() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    for (int i = 0; i < 7; i++)
+      writer.addDocument(doc("" + i, "x"));
+    writer.deleteDocuments(new Term("body", "x"));
+    writer.optimize();
+    assertEquals(0, writer.docCount());
+    writer.addDocument(doc("7", "y"));
+    writer.close();
+
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(1, reader.maxDoc());
+    assertEquals("7", reader.document(0).get("id"));
+    reader.close();
+  }
+}
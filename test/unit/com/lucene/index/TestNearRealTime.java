@@ -0,0 +1,97 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestNearRealTime extends TestCase {
+
+  public TestNearRealTime(String name) {
+    super(name);
+  }
+
+  private Directory dir;
+  private IndexWriter writer;
+
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = 3;
+  }
+
+  protected void tearDown() throws Exception {
+    writer.close();
+  }
+
+  private void add(int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", "" + i));
+      writer.addDocument(doc);
+    }
+  }
+
+  public void testSeesUncommitted() throws Exception {
+    add(0, 10);
+    IndexReader reader = writer.getReader();
+    assertEquals(10, reader.numDocs());
+    assertEquals("9", reader.document(9).get("id"));
+
+    IndexReader committed = IndexReader.open(dir);
+    assertEquals(0, committed.numDocs());	  // nothing committed yet
+    committed.close();
+    reader.close();
+  }
+
+  public void testReopen() throws Exception {
+    add(0, 10);
+    IndexReader reader = writer.getReader();
+    assertSame(reader, reader.reopen());	  // nothing has changed
+
+    add(10, 15);
+    assertEquals(10, reader.numDocs());
+    IndexReader newReader = reader.reopen();
+    assertEquals(15, newReader.numDocs());
+    assertEquals("14", newReader.document(14).get("id"));
+    reader.close();
+    assertEquals("0", newReader.document(0).get("id"));
+    newReader.close();
+  }
+
+  public void testSeesBufferedDeletes() throws Exception {
+    add(0, 10);
+    writer.deleteDocuments(new Term("id", "3"));
+    writer.updateDocument(new Term("id", "5"), doc("5"));
+    IndexReader reader = writer.getReader();
+    assertEquals(9, reader.numDocs());
+    TermDocs docs = reader.termDocs(new Term("id", "3"));
+    assertEquals(false, docs.next());
+    docs.close();
+    docs = reader.termDocs(new Term("id", "5"));
+    assertEquals(true, docs.next());
+    assertEquals(false, docs.next());		  // only the new document
+    docs.close();
+    reader.close();
+  }
+
+  private static Document doc(String id) {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", id));
+    return doc;
+  }
+
+  public void testDeleteThrows() throws Exception {
+    add(0, 5);
+    IndexReader reader = writer.getReader();
+    try {
+      reader.delete(0);
+      fail("deleted through a writer's reader");
+    } catch (UnsupportedOperationException e) {}
+    assertEquals(false, reader.isDeleted(0));
+    reader.close();
+  }
+}
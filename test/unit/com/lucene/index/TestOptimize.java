@@ -0,0 +1,104 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestOptimize extends TestCase {
+
+  public TestOptimize(String name) {
+    super(name);
+  }
+
+  private static final int NUM_DOCS = 95;
+
+  private Directory dir;
+
+  /** Makes ten segments: nine of ten documents and one of five. */
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", "" + i));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    assertEquals(10, segmentCount(dir));
+  }
+
+  private static int segmentCount(Directory dir) throws IOException {
+    String[] names = dir.list();
+    int n = 0;
+    for (int i = 0; i < names.length; i++)
+      if (names[i].endsWith(".fnm"))
+	n++;
+    return n;
+  }
+
+  private void optimize(int maxNumSegments) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), false);
+    writer.optimize(maxNumSegments);
+    writer.close();
+  }
+
+  /** Checks that the documents not deleted remain, in order.  Returns the
+    number of deleted documents which have not been removed. */
+  private int checkDocs(boolean[] deleted) throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    int n = 0;
+    for (int i = 0; i < NUM_DOCS; i++) {
+      if (deleted[i])
+	continue;
+      while (reader.isDeleted(n))
+	n++;
+      assertEquals("" + i, reader.document(n++).get("id"));
+    }
+    int remaining = reader.maxDoc() - reader.numDocs();
+    reader.close();
+    return remaining;
+  }
+
+  public void testPartialOptimize() throws Exception {
+    optimize(4);
+    assertEquals(4, segmentCount(dir));
+    checkDocs(new boolean[NUM_DOCS]);
+
+    optimize(6);				  // already fewer
+    assertEquals(4, segmentCount(dir));
+
+    optimize(1);
+    assertEquals(1, segmentCount(dir));
+    checkDocs(new boolean[NUM_DOCS]);
+  }
+
+  public void testDeletions() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = 0; i < NUM_DOCS; i += 4) {
+      reader.delete(i);
+      deleted[i] = true;
+    }
+    reader.close();
+
+    optimize(5);
+    assertEquals(5, segmentCount(dir));
+    int remaining = checkDocs(deleted);
+    assertEquals(true, remaining > 0);		  // only merged segments
+    assertEquals(true, remaining < 24);		  // lose their deletions
+  }
+
+  public void testInvalid() throws Exception {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), false);
+    try {
+      writer.optimize(0);
+      fail("optimized to no segments");
+    } catch (IllegalArgumentException e) {}
+    writer.close();
+    assertEquals(10, segmentCount(dir));
+  }
+}
@@ -0,0 +1,149 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestSegmentFormats extends TestCase {
+
+  public TestSegmentFormats(String name) {
+    super(name);
+  }
+
+  private static final int NUM_DOCS = 50;
+  private static final String[] COLORS = { "red", "green", "blue" };
+
+  private static Document doc(int i) {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", "" + i));
+    StringBuffer body = new StringBuffer();
+    for (int j = 0; j <= i % 5; j++)
+      body.append(" word");
+    doc.add(Field.Text("body", body.toString()));
+    Field title = Field.Text("title", "some title");
+    title.setOmitNorms(true);
+    doc.add(title);
+    doc.add(Field.NumericDocValue("price", i * 100L - 7));
+    doc.add(Field.SortedDocValue("color", COLORS[i % COLORS.length]));
+    return doc;
+  }
+
+  private static Directory index(boolean compound, int mergeFactor,
+				 boolean optimize) throws IOException {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.useCompoundFile = compound;
+    writer.mergeFactor = mergeFactor;
+    for (int i = 0; i < NUM_DOCS; i++)
+      writer.addDocument(doc(i));
+    if (optimize)
+      writer.optimize();
+    writer.close();
+    return dir;
+  }
+
+  private static int countFiles(Directory dir, String suffix)
+       throws IOException {
+    String[] names = dir.list();
+    int n = 0;
+    for (int i = 0; i < names.length; i++)
+      if (names[i].endsWith(suffix))
+	n++;
+    return n;
+  }
+
+  private void checkIndex(Directory dir, byte[] expectedNorms)
+       throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(NUM_DOCS, reader.numDocs());
+
+    byte[] norms = reader.norms("body");
+    assertEquals(NUM_DOCS, norms.length);
+    for (int i = 0; i < NUM_DOCS; i++)
+      assertEquals(expectedNorms[i], norms[i]);
+    assertEquals(null, reader.norms("title"));
+
+    NumericDocValues prices = reader.getNumericDocValues("price");
+    SortedDocValues colors = reader.getSortedDocValues("color");
+    assertEquals(COLORS.length, colors.getValueCount());
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertEquals(i * 100L - 7, prices.get(i));
+      assertEquals(COLORS[i % COLORS.length], colors.get(i));
+      assertEquals(colors.get(i), colors.lookup(colors.getOrd(i)));
+    }
+    for (int i = NUM_DOCS - 1; i >= 0; i -= 3)	  // values are read by seeking
+      assertEquals(i * 100L - 7, prices.get(i));
+    assertEquals("blue", colors.lookup(0));	  // ordinals are sorted
+    assertEquals(null, reader.getNumericDocValues("body"));
+    reader.close();
+  }
+
+  public void testRoundTrips() throws Exception {
+    Directory plain = index(false, 1000, false);
+    assertEquals(1, countFiles(plain, ".nrm"));	  // one norms file
+    assertEquals(0, countFiles(plain, ".cfs"));
+    IndexReader reader = IndexReader.open(plain);
+    byte[] norms = reader.norms("body");
+    reader.close();
+    assertEquals(true, norms[0] != norms[4]);	  // lengths differ
+    checkIndex(plain, norms);
+
+    checkIndex(index(false, 3, false), norms);
+    checkIndex(index(false, 3, true), norms);
+
+    Directory compound = index(true, 3, false);
+    assertEquals(0, countFiles(compound, ".nrm"));
+    assertEquals(0, countFiles(compound, ".frq"));
+    assertEquals(true, countFiles(compound, ".cfs") > 1);
+    checkIndex(compound, norms);
+
+    compound = index(true, 3, true);
+    assertEquals(1, countFiles(compound, ".cfs"));
+    checkIndex(compound, norms);
+  }
+
+  /** Deletions made in several sessions are each read back, whether the
+    segment is compound or not. */
+  public void testDeletions() throws Exception {
+    boolean[] compound = { false, true };
+    for (int c = 0; c < compound.length; c++) {
+      Directory dir = index(compound[c], 1000, true);
+      boolean[] deleted = new boolean[NUM_DOCS];
+      int[] steps = { 17, 5, 2 };		  // sparse, then denser
+      for (int s = 0; s < steps.length; s++) {
+	IndexReader reader = IndexReader.open(dir);
+	for (int i = s; i < NUM_DOCS; i += steps[s]) {
+	  if (!deleted[i])
+	    reader.delete(i);
+	  deleted[i] = true;
+	}
+	reader.close();
+
+	reader = IndexReader.open(dir);
+	int numDocs = 0;
+	for (int i = 0; i < NUM_DOCS; i++) {
+	  assertEquals(deleted[i], reader.isDeleted(i));
+	  if (!deleted[i])
+	    numDocs++;
+	}
+	assertEquals(numDocs, reader.numDocs());
+	reader.close();
+      }
+      assertEquals(1, countFiles(dir, ".del"));	  // old generations gone
+    }
+  }
+
+  public void testDuplicateDocValue() throws Exception {
+    Document doc = new Document();
+    doc.add(Field.NumericDocValue("price", 1L));
+    doc.add(Field.Keyword("price", "cheap"));	  // not a doc value
+    try {
+      doc.add(Field.SortedDocValue("price", "cheap"));
+      fail("added a second doc value");
+    } catch (IllegalArgumentException e) {}
+  }
+}
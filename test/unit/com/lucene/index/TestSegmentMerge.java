@@ -0,0 +1,242 @@
+package test.unit.com.lucene.index;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestSegmentMerge extends TestCase {
+
+  public TestSegmentMerge(String name) {
+    super(name);
+  }
+
+  private static final int NUM_DOCS = 40;
+  private static final String[] WORDS = { "apple", "banana", "cherry", "date" };
+
+  /** Field sets and orders vary, so that segments number fields
+    differently. */
+  private static Document doc(int i) {
+    Document doc = new Document();
+    if (i % 4 == 0)
+      doc.add(Field.Text("extra", WORDS[i % 3] + " " + WORDS[(i + 1) % 4]));
+    StringBuffer body = new StringBuffer();
+    for (int j = 0; j < 3 + i % 6; j++)
+      body.append(WORDS[(i * j) % WORDS.length]).append(' ');
+    doc.add(Field.Text("body", body.toString()));
+    doc.add(Field.Keyword("id", "" + i));
+    return doc;
+  }
+
+  private static IndexWriter writer(Directory dir, int mergeFactor)
+       throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = mergeFactor;
+    return writer;
+  }
+
+  /** Indexes the documents which are not deleted into a single segment. */
+  private static Directory reference(boolean[] deleted) throws IOException {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, 1000);
+    for (int i = 0; i < NUM_DOCS; i++)
+      if (!deleted[i])
+	writer.addDocument(doc(i));
+    writer.close();
+    return dir;
+  }
+
+  /** Indexes the documents into many segments, then deletes some. */
+  private static Directory segments(int from, int to, boolean[] deleted)
+       throws IOException {
+    return segments(new RAMDirectory(), from, to, deleted);
+  }
+
+  private static Directory segments(Directory dir, int from, int to,
+				    boolean[] deleted) throws IOException {
+    IndexWriter writer = writer(dir, 2);
+    for (int i = from; i < to; i++)
+      writer.addDocument(doc(i));
+    writer.close();
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = from; i < to; i++)
+      if (deleted[i])
+	reader.delete(i - from);
+    reader.close();
+    return dir;
+  }
+
+  private static void optimize(Directory dir) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), false);
+    writer.optimize();
+    writer.close();
+  }
+
+  /** Checks that two indexes have the same documents and postings. */
+  private void assertSameIndex(Directory expected, Directory actual)
+       throws IOException {
+    IndexReader a = IndexReader.open(expected);
+    IndexReader b = IndexReader.open(actual);
+    assertEquals(a.numDocs(), b.numDocs());
+    assertEquals(a.maxDoc(), b.maxDoc());
+    for (int i = 0; i < a.maxDoc(); i++) {
+      Document docA = a.document(i);
+      Document docB = b.document(i);
+      assertEquals(docA.get("id"), docB.get("id"));
+      assertEquals(docA.get("body"), docB.get("body"));
+      assertEquals(docA.get("extra"), docB.get("extra"));
+    }
+
+    TermEnum terms = a.terms();
+    TermEnum otherTerms = b.terms();
+    while (terms.next()) {
+      assertEquals(true, otherTerms.next());
+      Term term = terms.term();
+      assertEquals(term, otherTerms.term());
+      assertEquals(terms.docFreq(), otherTerms.docFreq());
+
+      TermPositions positions = a.termPositions(term);
+      TermPositions otherPositions = b.termPositions(term);
+      while (positions.next()) {
+	assertEquals(true, otherPositions.next());
+	assertEquals(positions.doc(), otherPositions.doc());
+	assertEquals(positions.freq(), otherPositions.freq());
+	for (int i = 0; i < positions.freq(); i++)
+	  assertEquals(positions.nextPosition(), otherPositions.nextPosition());
+      }
+      assertEquals(false, otherPositions.next());
+      positions.close();
+      otherPositions.close();
+    }
+    assertEquals(false, otherTerms.next());
+    terms.close();
+    otherTerms.close();
+    a.close();
+    b.close();
+  }
+
+  public void testMergeWithoutDeletions() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    Directory dir = segments(0, NUM_DOCS, deleted);
+    assertSameIndex(reference(deleted), dir);
+    optimize(dir);
+    assertSameIndex(reference(deleted), dir);
+  }
+
+  public void testMergeWithDeletions() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i += 3)
+      deleted[i] = true;
+    Directory dir = segments(0, NUM_DOCS, deleted);
+    optimize(dir);
+    assertSameIndex(reference(deleted), dir);
+  }
+
+  /** Merges segments with deletions together with segments without. */
+  public void testAddIndexes() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    for (int i = NUM_DOCS / 2; i < NUM_DOCS; i += 4)
+      deleted[i] = true;
+    Directory first = segments(0, NUM_DOCS / 2, deleted);
+    Directory second = segments(NUM_DOCS / 2, NUM_DOCS, deleted);
+
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, 2);
+    writer.addIndexes(new Directory[] { first, second });
+    writer.close();
+    assertSameIndex(reference(deleted), dir);
+  }
+
+  private static int segmentCount(Directory dir) throws IOException {
+    String[] names = dir.list();
+    int n = 0;
+    for (int i = 0; i < names.length; i++)
+      if (names[i].endsWith(".fnm"))
+	n++;
+    return n;
+  }
+
+  public void testParallelAddIndexes() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i += 5)
+      deleted[i] = true;
+    int[] bounds = { 0, 7, 25, NUM_DOCS };
+    int[] threads = { 1, 2, 3, 100 };
+    for (int t = 0; t < threads.length; t++) {
+      Directory[] dirs = new Directory[bounds.length - 1];
+      for (int i = 0; i < dirs.length; i++)
+	dirs[i] = segments(bounds[i], bounds[i + 1], deleted);
+
+      Directory dir = new RAMDirectory();
+      IndexWriter writer = writer(dir, 2);
+      writer.addIndexes(dirs, threads[t]);
+      writer.close();
+      assertEquals(1, segmentCount(dir));
+      assertSameIndex(reference(deleted), dir);
+    }
+  }
+
+  /** When one group fails to merge, the others' output is removed. */
+  public void testParallelAddIndexesFailure() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    File path = new File(System.getProperty("java.io.tmpdir"),
+			 "TestSegmentMerge");
+    FSDirectory broken = FSDirectory.getDirectory(path, true);
+    try {
+      Directory[] dirs = {
+	segments(0, 15, deleted),
+	segments(broken, 15, 25, deleted),
+	segments(25, NUM_DOCS, deleted)
+      };
+      String[] names = broken.list();
+      for (int i = 0; i < names.length; i++)
+	if (names[i].endsWith(".fnm"))
+	  broken.deleteFile(names[i]);		  // segments can't be read
+
+      Directory dir = new RAMDirectory();
+      IndexWriter writer = writer(dir, 2);
+      String[] before = dir.list();
+      try {
+	writer.addIndexes(dirs, 3);
+	fail("merged a broken index");
+      } catch (IOException e) {}
+      assertEquals(before.length, dir.list().length);
+      assertEquals(0, segmentCount(dir));
+      writer.close();
+    } finally {
+      String[] names = broken.list();
+      for (int i = 0; i < names.length; i++)
+	broken.deleteFile(names[i]);
+      broken.close();
+      path.delete();
+    }
+  }
+
+  /** Merges in a file system directory, bypassing the page cache where the
+    platform permits. */
+  public void testDirectMerges() throws Exception {
+    boolean[] deleted = new boolean[NUM_DOCS];
+    for (int i = 0; i < NUM_DOCS; i += 6)
+      deleted[i] = true;
+    File path = new File(System.getProperty("java.io.tmpdir"),
+			 "TestSegmentMerge");
+    FSDirectory dir = FSDirectory.getDirectory(path, true);
+    try {
+      dir.setDirectMerges(true);
+      segments(dir, 0, NUM_DOCS, deleted);
+      optimize(dir);
+      assertEquals(1, segmentCount(dir));
+      assertSameIndex(reference(deleted), dir);
+    } finally {
+      String[] names = dir.list();
+      for (int i = 0; i < names.length; i++)
+	dir.deleteFile(names[i]);
+      dir.close();
+      path.delete();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package test.unit.com.lucene.index;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestStoredFields extends TestCase {
+
+  public TestStoredFields(String name) {
+    super(name);
+  }
+
+  private static final int NUM_DOCS = 300;
+
+  /** Returns a body long enough that the documents span many compressed
+    blocks. */
+  private static String body(int i) {
+    StringBuffer buffer = new StringBuffer();
+    for (int j = 0; j < 100 + i % 50; j++)
+      buffer.append((char)('a' + (i + j) % 26));
+    return buffer.toString();
+  }
+
+  /** Characters taking one, two and three bytes, and a null. */
+  private static String text(int i) {
+    return "caf\u00e9 \u4e2d\u0000" + i;
+  }
+
+  private static byte[] bytes(int i) {
+    byte[] bytes = new byte[i % 7];
+    for (int j = 0; j < bytes.length; j++)
+      bytes[j] = (byte)(i * 31 + j);
+    return bytes;
+  }
+
+  private static Document doc(int i) {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", "" + i));
+    doc.add(Field.Text("body", body(i)));
+    doc.add(Field.UnIndexed("text", text(i)));
+    doc.add(Field.Binary("bytes", bytes(i)));
+    doc.add(Field.UnIndexed("int", i));
+    doc.add(Field.UnIndexed("long", (long)i << 40));
+    doc.add(Field.UnIndexed("float", i / 4.0f));
+    doc.add(Field.UnIndexed("double", -i / 8.0));
+    return doc;
+  }
+
+  private static void checkDoc(Document doc, int i) {
+    assertEquals("" + i, doc.get("id"));
+    assertEquals(body(i), doc.get("body"));
+    assertEquals(text(i), doc.get("text"));
+    byte[] bytes = doc.getField("bytes").binaryValue();
+    byte[] expected = bytes(i);
+    assertEquals(expected.length, bytes.length);
+    for (int j = 0; j < bytes.length; j++)
+      assertEquals(expected[j], bytes[j]);
+    assertEquals(Integer.valueOf(i), doc.getField("int").numericValue());
+    assertEquals(Long.valueOf((long)i << 40),
+		 doc.getField("long").numericValue());
+    assertEquals(Float.valueOf(i / 4.0f),
+		 doc.getField("float").numericValue());
+    assertEquals(Double.valueOf(-i / 8.0),
+		 doc.getField("double").numericValue());
+  }
+
+  private Directory index(int mergeFactor, boolean optimize)
+       throws IOException {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    writer.mergeFactor = mergeFactor;
+    for (int i = 0; i < NUM_DOCS; i++)
+      writer.addDocument(doc(i));
+    if (optimize)
+      writer.optimize();
+    writer.close();
+    return dir;
+  }
+
+  private void checkIndex(Directory dir) throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(NUM_DOCS, reader.maxDoc());
+    for (int i = NUM_DOCS - 1; i >= 0; i--)	  // out of order, across blocks
+      checkDoc(reader.document(i), i);
+    reader.close();
+  }
+
+  public void testRoundTrip() throws Exception {
+    checkIndex(index(1000, false));
+  }
+
+  public void testRoundTripAfterMerge() throws Exception {
+    checkIndex(index(3, false));
+    checkIndex(index(3, true));
+  }
+
+  public void testMergeWithDeletions() throws Exception {
+    Directory dir = index(3, false);
+    IndexReader reader = IndexReader.open(dir);
+    for (int i = 0; i < NUM_DOCS; i += 3)
+      reader.delete(i);
+    reader.close();
+
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), false);
+    writer.optimize();
+    writer.close();
+
+    reader = IndexReader.open(dir);
+    assertEquals(NUM_DOCS - (NUM_DOCS + 2) / 3, reader.maxDoc());
+    int n = 0;
+    for (int i = 0; i < NUM_DOCS; i++)
+      if (i % 3 != 0)
+	checkDoc(reader.document(n++), i);
+    reader.close();
+  }
+
+  public void testFieldSelector() throws Exception {
+    IndexReader reader = IndexReader.open(index(3, true));
+    FieldSelector selector =
+      new FieldNameSelector(new String[] { "id", "int" },
+			    new String[] { "body" });
+    for (int i = 0; i < NUM_DOCS; i += 7) {
+      Document doc = reader.document(i, selector);
+      assertEquals("" + i, doc.get("id"));
+      assertEquals(Integer.valueOf(i), doc.getField("int").numericValue());
+      assertEquals(true, doc.getField("body").isLazy());
+      assertEquals(body(i), doc.get("body"));
+      assertEquals(null, doc.getField("bytes"));
+      assertEquals(null, doc.getField("long"));
+    }
+    Document doc =
+      reader.document(0, new FieldNameSelector(new String[] { "body" }));
+    assertEquals(null, doc.getField("id"));	  // not loaded
+    reader.close();
+  }
+}
@@ -0,0 +1,150 @@
+package test.unit.com.lucene.index;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+
+public class TestWriteLock extends TestCase {
+
+  public TestWriteLock(String name) {
+    super(name);
+  }
+
+  private static IndexWriter writer(Directory dir, boolean create)
+       throws IOException {
+    return new IndexWriter(dir, new SimpleAnalyzer(), create);
+  }
+
+  private static void add(IndexWriter writer, String id) throws IOException {
+    Document doc = new Document();
+    doc.add(Field.Keyword("id", id));
+    writer.addDocument(doc);
+  }
+
+  private static int numDocs(Directory dir) throws IOException {
+    IndexReader reader = IndexReader.open(dir);
+    int numDocs = reader.numDocs();
+    reader.close();
+    return numDocs;
+  }
+
+  /** A second writer, even one which would create a new index, fails
+    without changing the index. */
+  private void checkExclusion(Directory dir) throws IOException {
+    IndexWriter writer = writer(dir, true);
+    add(writer, "a");
+    writer.commit();
+    try {
+      writer(dir, false);
+      fail("second writer opened");
+    } catch (IOException e) {}
+    try {
+      writer(dir, true);
+      fail("second writer created");
+    } catch (IOException e) {}
+    assertEquals(1, numDocs(dir));
+    add(writer, "b");
+    writer.close();
+
+    writer = writer(dir, false);		  // lock released
+    add(writer, "c");
+    writer.close();
+    assertEquals(3, numDocs(dir));
+  }
+
+  public void testRAMDirectory() throws Exception {
+    checkExclusion(new RAMDirectory());
+  }
+
+  public void testFSDirectory() throws Exception {
+    File path = new File(System.getProperty("java.io.tmpdir"),
+			 "TestWriteLock");
+    Directory dir = FSDirectory.getDirectory(path, true);
+    try {
+      checkExclusion(dir);
+    } finally {
+      String[] names = dir.list();
+      for (int i = 0; i < names.length; i++)
+	dir.deleteFile(names[i]);
+      dir.close();
+      path.delete();
+    }
+  }
+
+  public void testReaderDeletionsExcluded() throws Exception {
+    Directory dir = new RAMDirectory();
+    IndexWriter writer = writer(dir, true);
+    add(writer, "a");
+    add(writer, "b");
+    writer.commit();
+
+    IndexReader reader = IndexReader.open(dir);
+    try {
+      reader.delete(0);
+      reader.close();
+      fail("reader committed deletions while a writer was open");
+    } catch (IOException e) {}
+    writer.close();
+    assertEquals(2, numDocs(dir));
+  }
+
+  /** A RAMDirectory whose syncs fail on demand. */
+  private static class FailingDirectory extends Directory {
+    private RAMDirectory dir = new RAMDirectory();
+    boolean failSync = false;
+
+    public String[] list() throws IOException { return dir.list(); }
+    public boolean fileExists(String name) { return dir.fileExists(name); }
+    public long fileModified(String name) throws IOException {
+      return dir.fileModified(name);
+    }
+    public void deleteFile(String name) { dir.deleteFile(name); }
+    public void renameFile(String from, String to) {
+      dir.renameFile(from, to);
+    }
+    public long fileLength(String name) { return dir.fileLength(name); }
+    public OutputStream createFile(String name) {
+      return dir.createFile(name);
+    }
+    public InputStream openFile(String name) { return dir.openFile(name); }
+    public void sync(String name) throws IOException {
+      if (failSync)
+	throw new IOException("sync failed");
+    }
+    public void close() { dir.close(); }
+  }
+
+  public void testFailedCloseReleasesLock() throws Exception {
+    FailingDirectory dir = new FailingDirectory();
+    IndexWriter writer = writer(dir, true);
+    add(writer, "a");
+    writer.commit();
+    add(writer, "b");
+    dir.failSync = true;
+    try {
+      writer.close();
+      fail("closed without syncing");
+    } catch (IOException e) {}
+    dir.failSync = false;
+
+    writer = writer(dir, false);		  // lock released
+    add(writer, "c");
+    writer.close();
+    assertEquals(2, numDocs(dir));		  // "b" was never committed
+  }
+
+  public void testFailedOpenReleasesLock() throws Exception {
+    Directory dir = new RAMDirectory();
+    try {
+      writer(dir, false);			  // no index yet
+      fail("opened a missing index");
+    } catch (IOException e) {}
+    writer(dir, true).close();
+    assertEquals(0, numDocs(dir));
+  }
+}
@@ -0,0 +1,82 @@
+package test.unit.com.lucene.search;
+
+import java.io.IOException;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+import com.lucene.search.*;
+
+public class TestNumericRange extends TestCase {
+
+  public TestNumericRange(String name) {
+    super(name);
+  }
+
+  private Directory dir;
+  private IndexSearcher searcher;
+
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), true);
+    for (int i = 0; i < 1000; i++) {
+      Document doc = new Document();
+      doc.add(Field.Text("body", i % 2 == 0 ? "even" : "odd"));
+      doc.add(Field.Keyword("value", i * 10));	  // the last field
+      writer.addDocument(doc);
+    }
+    writer.optimize();
+    writer.close();
+    searcher = new IndexSearcher(dir);
+  }
+
+  protected void tearDown() throws Exception {
+    searcher.close();
+  }
+
+  private int count(Query query) throws IOException {
+    return searcher.search(query).length();
+  }
+
+  private int count(Filter filter) throws IOException {
+    return searcher.search(new TermQuery(new Term("body", "even")), filter)
+      .length() +
+      searcher.search(new TermQuery(new Term("body", "odd")), filter)
+      .length();
+  }
+
+  public void testQuery() throws Exception {
+    assertEquals(1000, count(NumericRangeQuery.IntRange("value", 0, 9990)));
+    assertEquals(11, count(NumericRangeQuery.IntRange("value", 100, 200)));
+    assertEquals(10, count(NumericRangeQuery.IntRange("value", 101, 200)));
+    assertEquals(1, count(NumericRangeQuery.IntRange("value", 9990, 20000)));
+    assertEquals(0, count(NumericRangeQuery.IntRange("value", 1, 9)));
+  }
+
+  public void testFilter() throws Exception {
+    assertEquals(1000, count(NumericRangeFilter.IntRange("value", 0, 9990)));
+    assertEquals(11, count(NumericRangeFilter.IntRange("value", 100, 200)));
+    assertEquals(1, count(NumericRangeFilter.IntRange("value", 9990, 20000)));
+    assertEquals(0, count(NumericRangeFilter.IntRange("value", -5, -1)));
+  }
+
+  /** A range above every indexed value seeks past the last term. */
+  public void testPastLastTerm() throws Exception {
+    assertEquals(0, count(NumericRangeQuery.IntRange("value", 10000, 20000)));
+    assertEquals(0, count(NumericRangeFilter.IntRange("value", 10000, 20000)));
+    assertEquals(0, count(NumericRangeQuery.IntRange
+			  ("value", 1 << 30, Integer.MAX_VALUE)));
+    assertEquals(0, count(NumericRangeFilter.IntRange
+			  ("value", 1 << 30, Integer.MAX_VALUE)));
+  }
+
+  public void testNoNorms() throws Exception {
+    assertEquals(true, Field.Keyword("value", 1.5).omitNorms());
+    IndexReader reader = IndexReader.open(dir);
+    assertEquals(null, reader.norms("value"));
+    assertEquals(false, reader.norms("body") == null);
+    reader.close();
+  }
+}
@@ -0,0 +1,227 @@
+package test.unit.com.lucene.search;
+
+import java.io.IOException;
+import java.util.Vector;
+import junit.framework.*;
+
+import com.lucene.index.*;
+import com.lucene.store.*;
+import com.lucene.document.*;
+import com.lucene.analysis.*;
+import com.lucene.search.*;
+
+public class TestSearcherManager extends TestCase {
+
+  public TestSearcherManager(String name) {
+    super(name);
+  }
+
+  /** Records which readers have been closed. */
+  private class TrackingReader extends IndexReader {
+    private IndexReader in;
+    boolean closed = false;
+
+    TrackingReader(IndexReader in) {
+      this.in = in;
+      readers.addElement(this);
+    }
+
+    public int numDocs() { return in.numDocs(); }
+    public int maxDoc() { return in.maxDoc(); }
+    public Document document(int n) throws IOException {
+      return in.document(n);
+    }
+    public boolean isDeleted(int n) { return in.isDeleted(n); }
+    public byte[] norms(String field) throws IOException {
+      return in.norms(field);
+    }
+    public TermEnum terms() throws IOException { return in.terms(); }
+    public TermEnum terms(Term t) throws IOException { return in.terms(t); }
+    public int docFreq(Term t) throws IOException { return in.docFreq(t); }
+    public TermDocs termDocs(Term t) throws IOException {
+      return in.termDocs(t);
+    }
+    public TermPositions termPositions(Term t) throws IOException {
+      return in.termPositions(t);
+    }
+    public void delete(int docNum) throws IOException { in.delete(docNum); }
+
+    public IndexReader reopen() throws IOException {
+      IndexReader reader = in.reopen();
+      return reader == in ? this : new TrackingReader(reader);
+    }
+
+    public void close() throws IOException {
+      if (closed)
+	throw new IllegalStateException("closed twice");
+      closed = true;
+      in.close();
+    }
+  }
+
+  private Directory dir;
+  private Vector readers;
+
+  protected void setUp() throws Exception {
+    dir = new RAMDirectory();
+    readers = new Vector();
+    add(0, 3, true);
+  }
+
+  private void add(int from, int to, boolean create) throws IOException {
+    IndexWriter writer = new IndexWriter(dir, new SimpleAnalyzer(), create);
+    for (int i = from; i < to; i++) {
+      Document doc = new Document();
+      doc.add(Field.Keyword("id", "" + i));
+      doc.add(Field.Text("body", "text"));
+      writer.addDocument(doc);
+    }
+    writer.close();
+  }
+
+  private TrackingReader reader(int i) {
+    return (TrackingReader)readers.elementAt(i);
+  }
+
+  private SearcherManager manager(SearcherWarmer warmer) throws IOException {
+    return new SearcherManager(new TrackingReader(IndexReader.open(dir)),
+			       warmer);
+  }
+
+  private static int hits(IndexSearcher searcher) throws IOException {
+    return searcher.search(new TermQuery(new Term("body", "text"))).length();
+  }
+
+  public void testAcquireRelease() throws Exception {
+    SearcherManager manager = manager(null);
+    IndexSearcher searcher = manager.acquire();
+    assertSame(searcher, manager.acquire());
+    assertEquals(3, hits(searcher));
+    manager.release(searcher);
+    manager.release(searcher);
+    IndexSearcher other = new IndexSearcher(dir);
+    try {
+      manager.release(other);
+      fail("released a searcher which was not acquired");
+    } catch (IllegalArgumentException e) {}
+    other.close();
+
+    manager.close();
+    assertEquals(true, reader(0).closed);
+    try {
+      manager.acquire();
+      fail("acquired from a closed manager");
+    } catch (IllegalStateException e) {}
+  }
+
+  public void testRefresh() throws Exception {
+    SearcherManager manager = manager(null);
+    assertEquals(false, manager.maybeRefresh());  // index unchanged
+    IndexSearcher old = manager.acquire();
+
+    add(3, 5, false);
+    assertEquals(true, manager.maybeRefresh());
+    IndexSearcher searcher = manager.acquire();
+    assertEquals(false, searcher == old);
+    assertEquals(5, hits(searcher));
+
+    assertEquals(false, reader(0).closed);	  // still acquired
+    assertEquals(3, hits(old));
+    manager.release(old);
+    assertEquals(true, reader(0).closed);
+
+    manager.release(searcher);
+    assertEquals(false, reader(1).closed);	  // still current
+    manager.close();
+    assertEquals(true, reader(1).closed);
+  }
+
+  /** The warmer sees each new searcher before searches can acquire it. */
+  public void testWarmer() throws Exception {
+    final Vector warmed = new Vector();
+    final SearcherManager[] manager = new SearcherManager[1];
+    SearcherWarmer warmer = new SearcherWarmer() {
+	public void warm(IndexSearcher searcher) throws IOException {
+	  if (manager[0] != null) {
+	    IndexSearcher current = manager[0].acquire();
+	    assertEquals(false, current == searcher);
+	    manager[0].release(current);
+	  }
+	  warmed.addElement(searcher);
+	}
+      };
+    manager[0] = manager(warmer);
+    assertEquals(1, warmed.size());
+
+    add(3, 4, false);
+    manager[0].maybeRefresh();
+    assertEquals(2, warmed.size());
+    IndexSearcher searcher = manager[0].acquire();
+    assertSame(warmed.elementAt(1), searcher);
+    manager[0].release(searcher);
+    manager[0].close();
+  }
+
+  /** close() waits for a refresh in progress, then closes the searcher it
+    made current. */
+  public void testCloseDuringRefresh() throws Exception {
+    final Object gate = new Object();
+    final boolean[] state = new boolean[2];	  // warming, may proceed
+    SearcherWarmer warmer = new SearcherWarmer() {
+	public void warm(IndexSearcher searcher) {
+	  synchronized (gate) {
+	    if (readers.size() < 2)
+	      return;				  // initial searcher
+	    state[0] = true;
+	    gate.notifyAll();
+	    while (!state[1])
+	      try {
+		gate.wait();
+	      } catch (InterruptedException e) {}
+	  }
+	}
+      };
+    final SearcherManager manager = manager(warmer);
+    add(3, 4, false);
+
+    final Exception[] error = new Exception[1];
+    Thread refresh = new Thread() {
+	public void run() {
+	  try {
+	    manager.maybeRefresh();
+	  } catch (Exception e) {
+	    error[0] = e;
+	  }
+	}
+      };
+    refresh.start();
+    synchronized (gate) {
+      while (!state[0])
+	gate.wait();
+    }
+
+    Thread close = new Thread() {
+	public void run() {
+	  try {
+	    manager.close();
+	  } catch (Exception e) {
+	    error[0] = e;
+	  }
+	}
+      };
+    close.start();
+    close.join(200);
+    assertEquals(true, close.isAlive());	  // waiting for the refresh
+
+    synchronized (gate) {
+      state[1] = true;
+      gate.notifyAll();
+    }
+    refresh.join();
+    close.join();
+    assertEquals(null, error[0]);
+    assertEquals(true, reader(0).closed);
+    assertEquals(true, reader(1).closed);
+    assertEquals(false, manager.maybeRefresh());
+  }
+}
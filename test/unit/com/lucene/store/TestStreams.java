@@ -0,0 +1,196 @@
+package test.unit.com.lucene.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.net.URL;
+import java.net.URLClassLoader;
+import junit.framework.*;
+
+import com.lucene.store.*;
+
+public class TestStreams extends TestCase {
+
+  public TestStreams(String name) {
+    super(name);
+  }
+
+  private static final int LENGTH = 100000;
+  private static final int[] BUFFER_SIZES = { 1, 7, 1024, 4000, 16384 };
+
+  private Random random;
+  private byte[] data;
+  private File path;
+  private FSDirectory fsDir;
+
+  protected void setUp() throws Exception {
+    random = new Random(1);
+    data = new byte[LENGTH];
+    random.nextBytes(data);
+    path = new File(System.getProperty("java.io.tmpdir"), "TestStreams");
+    fsDir = FSDirectory.getDirectory(path, true);
+  }
+
+  protected void tearDown() throws Exception {
+    delete(fsDir, path);
+  }
+
+  private static void delete(Directory dir, File path) throws IOException {
+    String[] names = dir.list();
+    for (int i = 0; i < names.length; i++)
+      dir.deleteFile(names[i]);
+    dir.close();
+    path.delete();
+  }
+
+  /** Writes the data in runs of random length, some byte by byte, and some
+    longer than any buffer. */
+  private void write(OutputStream out, boolean resize) throws IOException {
+    int p = 0;
+    while (p < LENGTH) {
+      int len = Math.min(LENGTH - p, random.nextInt(3) == 0
+			 ? random.nextInt(20000) : random.nextInt(20));
+      if (len == 1)
+	out.writeByte(data[p]);
+      else
+	out.writeBytes(data, p, len);
+      p += len;
+      if (resize && random.nextInt(50) == 0)
+	out.setBufferSize(1 + random.nextInt(3000));
+    }
+    out.close();
+  }
+
+  /** Reads runs of random length from random positions. */
+  private void read(InputStream in, boolean resize) throws IOException {
+    assertEquals(LENGTH, in.length());
+    for (int k = 0; k < 1000; k++) {
+      int pos = random.nextInt(LENGTH);
+      int len = Math.min(LENGTH - pos, random.nextInt(random.nextBoolean()
+						       ? 20 : 20000));
+      in.seek(pos);
+      if (resize && random.nextInt(20) == 0) {
+	in.setBufferSize(1 + random.nextInt(3000));
+	assertEquals(pos, in.getFilePointer());
+      }
+      byte[] b = new byte[len + 3];
+      in.readBytes(b, 3, len);
+      for (int i = 0; i < len; i++)
+	assertEquals(data[pos + i], b[3 + i]);
+      if (pos + len < LENGTH)
+	assertEquals(data[pos + len], in.readByte());
+    }
+    try {
+      in.seek(LENGTH - 5);
+      in.readBytes(new byte[10], 0, 10);
+      fail("read past EOF");
+    } catch (IOException e) {}
+    in.close();
+  }
+
+  private void checkBufferSizes(Directory dir) throws IOException {
+    for (int i = 0; i < BUFFER_SIZES.length; i++) {
+      String name = "f" + i;
+      OutputStream out = dir.createFile(name, BUFFER_SIZES[i]);
+      assertEquals(BUFFER_SIZES[i], out.getBufferSize());
+      write(out, true);
+      InputStream in = dir.openFile(name, BUFFER_SIZES[i]);
+      assertEquals(BUFFER_SIZES[i], in.getBufferSize());
+      read(in, true);
+    }
+  }
+
+  public void testRAMDirectory() throws Exception {
+    checkBufferSizes(new RAMDirectory());
+  }
+
+  public void testFSDirectory() throws Exception {
+    checkBufferSizes(fsDir);
+  }
+
+  public void testDirectoryBufferSize() throws Exception {
+    fsDir.setBufferSize(4000);
+    assertEquals(4000, fsDir.getBufferSize());
+    OutputStream out = fsDir.createFile("f");
+    assertEquals(4000, out.getBufferSize());
+    write(out, false);
+    InputStream in = fsDir.openFile("f");
+    assertEquals(4000, in.getBufferSize());
+    read(in, false);
+    try {
+      fsDir.setBufferSize(0);
+      fail("buffer size of zero");
+    } catch (IllegalArgumentException e) {}
+    try {
+      in.setBufferSize(-1);
+      fail("negative buffer size");
+    } catch (IllegalArgumentException e) {}
+  }
+
+  public void testSync() throws Exception {
+    write(fsDir.createFile("f"), false);
+    fsDir.sync("f");
+    try {
+      fsDir.sync("missing");
+      fail("synced a missing file");
+    } catch (IOException e) {}
+    assertEquals(false, fsDir.fileExists("missing"));
+  }
+
+  private void checkMergeFiles(FSDirectory dir) throws IOException {
+    assertEquals(false, dir.getDirectMerges());
+    dir.setDirectMerges(true);
+    assertEquals(true, dir.getDirectMerges());
+    write(dir.createMergeFile("m"), false);
+    InputStream in = dir.openMergeFile("m");
+    read((InputStream)in.clone(), false);
+    read(in, false);
+    assertEquals(LENGTH, dir.fileLength("m"));	  // padding truncated
+    try {
+      dir.createMergeFile("m");
+      fail("merge file overwritten");
+    } catch (IOException e) {}
+  }
+
+  public void testDirectMerges() throws Exception {
+    checkMergeFiles(fsDir);
+  }
+
+  /** Loads classes from the same place as this test, except for the direct
+    i/o streams, as if they had been left out of the build. */
+  private static class NoDirectLoader extends URLClassLoader {
+    NoDirectLoader() {
+      super(new URL[] {
+	FSDirectory.class.getProtectionDomain().getCodeSource().getLocation()
+      }, null);
+    }
+    protected Class loadClass(String name, boolean resolve)
+	 throws ClassNotFoundException {
+      if (name.startsWith("com.lucene.store.FSDirect") &&
+	  name.endsWith("Stream"))
+	throw new ClassNotFoundException(name);
+      return super.loadClass(name, resolve);
+    }
+  }
+
+  /** Without the direct i/o streams, merge files are ordinary files. */
+  public void testDirectMergesFallback() throws Exception {
+    ClassLoader loader = new NoDirectLoader();
+    Class c = loader.loadClass("com.lucene.store.FSDirectory");
+    Object dir = c.getMethod("getDirectory", new Class[] {
+      File.class, Boolean.TYPE }).invoke(null, new Object[] {
+	path, Boolean.TRUE });
+    c.getMethod("setDirectMerges", new Class[] { Boolean.TYPE })
+      .invoke(dir, new Object[] { Boolean.TRUE });
+    Object out = c.getMethod("createMergeFile", new Class[] { String.class })
+      .invoke(dir, new Object[] { "m" });
+    assertEquals("com.lucene.store.FSOutputStream", out.getClass().getName());
+    loader.loadClass("com.lucene.store.OutputStream")
+      .getMethod("close", new Class[0]).invoke(out, new Object[0]);
+    Object in = c.getMethod("openMergeFile", new Class[] { String.class })
+      .invoke(dir, new Object[] { "m" });
+    assertEquals("com.lucene.store.FSInputStream", in.getClass().getName());
+    loader.loadClass("com.lucene.store.InputStream")
+      .getMethod("close", new Class[0]).invoke(in, new Object[0]);
+  }
+}